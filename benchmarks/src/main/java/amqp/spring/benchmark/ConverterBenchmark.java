@@ -0,0 +1,158 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.benchmark;
+
+import amqp.spring.converter.CBORConverter;
+import amqp.spring.converter.ContentTypeConverterFactory;
+import amqp.spring.converter.JacksonConverter;
+import amqp.spring.converter.StringConverter;
+import amqp.spring.converter.TypeRegistryConverter;
+import amqp.spring.converter.XStreamConverter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+/**
+ * Marshalling and un-marshalling bodies with the bundled converters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConverterBenchmark {
+    @Param({"64", "1024", "16384"})
+    public int payloadSize;
+    
+    private Payload payload;
+    private String text;
+    private StringBuilder builder;
+    private XStreamConverter xstreamConverter;
+    private JacksonConverter jacksonConverter;
+    private CBORConverter cborConverter;
+    private TypeRegistryConverter registryConverter;
+    private StringConverter stringConverter;
+    private StringConverter viewConverter;
+    private ContentTypeConverterFactory factory;
+    private Message xstreamMessage;
+    private Message jacksonMessage;
+    private Message cborMessage;
+    private Message registryMessage;
+    private Message stringMessage;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        this.payload = Payload.ofSize(this.payloadSize);
+        this.text = Fixtures.text(this.payloadSize);
+        this.builder = new StringBuilder(this.text);
+        
+        this.xstreamConverter = new XStreamConverter();
+        this.xstreamConverter.setAllowedTypes(new String[] {Payload.class.getName()});
+        this.jacksonConverter = new JacksonConverter();
+        this.jacksonConverter.setAllowedTypes(new String[] {Payload.class.getName()});
+        this.cborConverter = new CBORConverter();
+        this.cborConverter.setAllowedTypes(new String[] {Payload.class.getName()});
+        this.registryConverter = new TypeRegistryConverter();
+        this.registryConverter.register(1, Payload.class);
+        this.stringConverter = new StringConverter();
+        this.stringConverter.setContentType("text/plain");
+        this.viewConverter = new StringConverter();
+        this.viewConverter.setCharSequenceView(true);
+        
+        this.factory = new ContentTypeConverterFactory();
+        this.factory.getConverters().put(MessageProperties.CONTENT_TYPE_JSON, this.xstreamConverter);
+        this.factory.getConverters().put("text/plain", this.stringConverter);
+        
+        this.xstreamMessage = this.xstreamConverter.toMessage(this.payload, new MessageProperties());
+        this.jacksonMessage = this.jacksonConverter.toMessage(this.payload, new MessageProperties());
+        this.cborMessage = this.cborConverter.toMessage(this.payload, new MessageProperties());
+        this.registryMessage = this.registryConverter.toMessage(this.payload, new MessageProperties());
+        this.stringMessage = this.stringConverter.toMessage(this.text, new MessageProperties());
+    }
+    
+    @Benchmark
+    public Message xstreamToMessage() {
+        return this.xstreamConverter.toMessage(this.payload, new MessageProperties());
+    }
+    
+    @Benchmark
+    public Object xstreamFromMessage() {
+        return this.xstreamConverter.fromMessage(this.xstreamMessage);
+    }
+    
+    @Benchmark
+    public Message jacksonToMessage() {
+        return this.jacksonConverter.toMessage(this.payload, new MessageProperties());
+    }
+    
+    @Benchmark
+    public Object jacksonFromMessage() {
+        return this.jacksonConverter.fromMessage(this.jacksonMessage);
+    }
+    
+    @Benchmark
+    public Message cborToMessage() {
+        return this.cborConverter.toMessage(this.payload, new MessageProperties());
+    }
+    
+    @Benchmark
+    public Object cborFromMessage() {
+        return this.cborConverter.fromMessage(this.cborMessage);
+    }
+    
+    @Benchmark
+    public Message registryToMessage() {
+        return this.registryConverter.toMessage(this.payload, new MessageProperties());
+    }
+    
+    @Benchmark
+    public Object registryFromMessage() {
+        return this.registryConverter.fromMessage(this.registryMessage);
+    }
+    
+    @Benchmark
+    public Message stringToMessage() {
+        return this.stringConverter.toMessage(this.text, new MessageProperties());
+    }
+    
+    @Benchmark
+    public Object stringFromMessage() {
+        return this.stringConverter.fromMessage(this.stringMessage);
+    }
+    
+    @Benchmark
+    public Message stringBuilderToMessage() {
+        return this.stringConverter.toMessage(this.builder, new MessageProperties());
+    }
+    
+    @Benchmark
+    public Object stringViewFromMessage() {
+        return this.viewConverter.fromMessage(this.stringMessage);
+    }
+    
+    @Benchmark
+    public Object factoryFromMessage() {
+        return this.factory.fromMessage(this.stringMessage);
+    }
+    
+    @Benchmark
+    public Message factoryToMessage() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType("text/plain");
+        return this.factory.toMessage(this.text, properties);
+    }
+}
@@ -0,0 +1,51 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.benchmark;
+
+import amqp.spring.camel.component.SpringAMQPHeader;
+import amqp.spring.camel.component.SpringAMQPMessage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.camel.CamelContext;
+import org.apache.camel.support.DefaultExchange;
+
+/**
+ * Builds the bodies and headers shared by the benchmarks
+ */
+final class Fixtures {
+    static final byte[] EMPTY_BODY = new byte[0];
+    
+    private Fixtures() {
+    }
+    
+    static String text(int size) {
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'a');
+        return new String(chars);
+    }
+    
+    /**
+     * A mix of AMQP basic properties and custom application headers
+     */
+    static Map<String, Object> headers(int count) {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(SpringAMQPHeader.CONTENT_TYPE, "text/plain");
+        headers.put(SpringAMQPHeader.MESSAGE_ID, "message-1");
+        headers.put(SpringAMQPHeader.CORRELATION_ID, "correlation-1");
+        headers.put(SpringAMQPHeader.PRIORITY, 4);
+        for(int i = headers.size(); i < count; ++i)
+            headers.put("customHeader" + i, i % 2 == 0 ? "value" + i : Integer.valueOf(i));
+        return headers;
+    }
+    
+    static SpringAMQPMessage camelMessage(CamelContext context, Object body, int headerCount) {
+        SpringAMQPMessage message = new SpringAMQPMessage(context);
+        message.setBody(body);
+        message.setHeaders(headers(headerCount));
+        //Message IDs are generated through the owning exchange
+        new DefaultExchange(context).setIn(message);
+        return message;
+    }
+}
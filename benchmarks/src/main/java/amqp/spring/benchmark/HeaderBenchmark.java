@@ -0,0 +1,58 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.benchmark;
+
+import amqp.spring.camel.component.SpringAMQPHeader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+/**
+ * Mapping Camel headers onto AMQP basic properties and application headers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeaderBenchmark {
+    @Param({"4", "16", "64"})
+    public int headerCount;
+    
+    private Map<String, Object> headers;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        this.headers = Fixtures.headers(this.headerCount);
+    }
+    
+    @Benchmark
+    public Message setBasicPropertiesFromHeaders() {
+        return SpringAMQPHeader.setBasicPropertiesFromHeaders(new Message(Fixtures.EMPTY_BODY, new MessageProperties()), this.headers);
+    }
+    
+    @Benchmark
+    public Message copyHeaders() {
+        return SpringAMQPHeader.copyHeaders(new Message(Fixtures.EMPTY_BODY, new MessageProperties()), this.headers);
+    }
+    
+    @Benchmark
+    public Message mapHeaders() {
+        return SpringAMQPHeader.mapHeaders(new Message(Fixtures.EMPTY_BODY, new MessageProperties()), this.headers);
+    }
+}
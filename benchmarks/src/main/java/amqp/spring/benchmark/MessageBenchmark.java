@@ -0,0 +1,70 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.benchmark;
+
+import amqp.spring.camel.component.SpringAMQPMessage;
+import amqp.spring.converter.StringConverter;
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+/**
+ * Converting between Camel and AMQP messages, as done for every message sent or received
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageBenchmark {
+    @Param({"64", "1024", "16384"})
+    public int payloadSize;
+    
+    @Param({"4", "16"})
+    public int headerCount;
+    
+    private CamelContext context;
+    private MessageConverter converter;
+    private SpringAMQPMessage camelMessage;
+    private Message amqpMessage;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        this.context = new DefaultCamelContext();
+        this.converter = new StringConverter();
+        this.camelMessage = Fixtures.camelMessage(this.context, Fixtures.text(this.payloadSize), this.headerCount);
+        this.amqpMessage = this.camelMessage.toAMQPMessage(this.converter);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.context.close();
+    }
+    
+    @Benchmark
+    public Message toAMQPMessage() {
+        return this.camelMessage.toAMQPMessage(this.converter);
+    }
+    
+    @Benchmark
+    public Object fromAMQPMessage() {
+        return SpringAMQPMessage.fromAMQPMessage(this.context, this.converter, this.amqpMessage).getBody();
+    }
+}
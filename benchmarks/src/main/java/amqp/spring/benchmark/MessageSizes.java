@@ -0,0 +1,38 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.benchmark;
+
+import amqp.spring.converter.CBORConverter;
+import amqp.spring.converter.JacksonConverter;
+import amqp.spring.converter.XStreamConverter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.core.MessageProperties;
+
+/**
+ * Prints the encoded body size of the benchmark payload for each JSON-model converter, complementing
+ * the throughput figures from ConverterBenchmark. Payload sizes may be passed as arguments.
+ */
+public class MessageSizes {
+    public static void main(String[] args) {
+        Map<String, MessageConverter> converters = new LinkedHashMap<>();
+        converters.put("xstream", new XStreamConverter());
+        converters.put("jackson", new JacksonConverter());
+        converters.put("cbor", new CBORConverter());
+        
+        String[] payloadSizes = args.length > 0 ? args : new String[] {"64", "1024", "16384"};
+        System.out.printf("%-12s %10s %10s %8s%n", "converter", "payload", "body", "ratio");
+        for(String payloadSize : payloadSizes) {
+            Payload payload = Payload.ofSize(Integer.parseInt(payloadSize));
+            int baseline = -1;
+            for(Map.Entry<String, MessageConverter> converter : converters.entrySet()) {
+                int size = converter.getValue().toMessage(payload, new MessageProperties()).getBody().length;
+                if(baseline < 0)
+                    baseline = size;
+                System.out.printf("%-12s %10s %10d %8.2f%n", converter.getKey(), payloadSize, size, (double) size / baseline);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.benchmark;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A representative domain object whose serialized size scales with the payload parameter
+ */
+public class Payload implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private String name;
+    private long timestamp;
+    private String text;
+    private int[] values;
+
+    public Payload() {
+    }
+
+    public static Payload ofSize(int payloadSize) {
+        Payload payload = new Payload();
+        payload.name = "benchmark";
+        payload.timestamp = 1700000000000L;
+        char[] text = new char[payloadSize / 2];
+        Arrays.fill(text, 'x');
+        payload.text = new String(text);
+        payload.values = new int[Math.max(1, payloadSize / 16)];
+        for(int i = 0; i < payload.values.length; ++i)
+            payload.values[i] = i;
+        return payload;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    public void setValues(int[] values) {
+        this.values = values;
+    }
+}
@@ -0,0 +1,99 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.benchmark;
+
+import amqp.spring.camel.component.SpringAMQPComponent;
+import amqp.spring.camel.component.SpringAMQPEndpoint;
+import amqp.spring.converter.StringConverter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Producer;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+/**
+ * A complete InOnly publish through a started producer, up to the point the message would be written to a channel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProducerBenchmark {
+    @Param({"64", "1024"})
+    public int payloadSize;
+    
+    @Param({"4", "16", "64"})
+    public int headerCount;
+    
+    private CamelContext context;
+    private CapturingTemplate template;
+    private Producer producer;
+    private String text;
+    private Map<String, Object> headers;
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.context = new DefaultCamelContext();
+        this.text = Fixtures.text(this.payloadSize);
+        this.headers = Fixtures.headers(this.headerCount);
+        
+        this.template = new CapturingTemplate();
+        this.template.setMessageConverter(new StringConverter());
+        SpringAMQPComponent component = new SpringAMQPComponent(new CachingConnectionFactory());
+        component.setCamelContext(this.context);
+        String remaining = "exchange:queue:routingKey";
+        SpringAMQPEndpoint endpoint = new SpringAMQPEndpoint(component, "spring-amqp:"+remaining, remaining, this.template, null);
+        endpoint.setCreateResources(false);
+        
+        this.producer = endpoint.createProducer();
+        this.producer.start();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.producer.stop();
+        this.context.close();
+    }
+    
+    @Benchmark
+    public Message publish() throws Exception {
+        Exchange exchange = new DefaultExchange(this.context);
+        exchange.getIn().setBody(this.text);
+        exchange.getIn().getHeaders().putAll(this.headers);
+        this.producer.process(exchange);
+        return this.template.published;
+    }
+    
+    /**
+     * Keeps the last message sent instead of publishing it
+     */
+    private static class CapturingTemplate extends RabbitTemplate {
+        private Message published;
+        
+        @Override
+        public void send(String exchange, String routingKey, Message message) {
+            this.published = message;
+        }
+    }
+}
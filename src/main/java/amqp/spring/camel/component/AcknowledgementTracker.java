@@ -0,0 +1,103 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package amqp.spring.camel.component;
+
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the deliveries on a single channel that are still being processed, so they can be
+ * completed in any order while acknowledgements are sent in order. Whenever the oldest
+ * outstanding deliveries have all completed, they are acknowledged at once with
+ * basicAck(tag, multiple=true). Failed deliveries are rejected on their own with
+ * basicNack(tag, multiple=false), so they are never folded into a multiple acknowledgement.
+ */
+class AcknowledgementTracker {
+    private static transient final Logger LOG = LoggerFactory.getLogger(AcknowledgementTracker.class);
+    
+    private final Channel channel;
+    private final TreeSet<Long> outstanding = new TreeSet<>();
+    private final TreeSet<Long> completed = new TreeSet<>();
+    private boolean closed = false;
+    
+    public AcknowledgementTracker(Channel channel) {
+        this.channel = channel;
+    }
+    
+    /**
+     * Registers a delivery before it is handed to the route; deliveries must be
+     * registered in the order they were received.
+     */
+    public synchronized void delivered(long deliveryTag) {
+        this.outstanding.add(deliveryTag);
+    }
+    
+    /**
+     * Marks a delivery as processed, acknowledging it along with any later
+     * deliveries that completed while waiting on it.
+     */
+    public synchronized void complete(long deliveryTag) throws IOException {
+        if(this.closed) {
+            LOG.debug("Channel closed before delivery completed, the broker will redeliver it [delivery_tag={}]", deliveryTag);
+            return;
+        }
+        if(! this.outstanding.contains(deliveryTag)) {
+            LOG.warn("Ignoring completion of unknown delivery [delivery_tag={}]", deliveryTag);
+            return;
+        }
+        
+        this.completed.add(deliveryTag);
+        acknowledgeCompleted();
+    }
+    
+    /**
+     * Marks a delivery as failed and rejects it straight away. Deliveries that completed
+     * while waiting on it are then acknowledged.
+     */
+    public synchronized void reject(long deliveryTag, boolean requeue) throws IOException {
+        if(this.closed) {
+            LOG.debug("Channel closed before delivery failed, the broker will redeliver it [delivery_tag={}]", deliveryTag);
+            return;
+        }
+        if(! this.outstanding.remove(deliveryTag)) {
+            LOG.warn("Ignoring rejection of unknown delivery [delivery_tag={}]", deliveryTag);
+            return;
+        }
+        
+        LOG.trace("Rejecting delivery [delivery_tag={}, requeue={}]", deliveryTag, requeue);
+        this.channel.basicNack(deliveryTag, false, requeue);
+        acknowledgeCompleted();
+    }
+    
+    //Callers must hold the lock
+    private void acknowledgeCompleted() throws IOException {
+        long ackTag = -1;
+        while(! this.outstanding.isEmpty() && this.completed.remove(this.outstanding.first()))
+            ackTag = this.outstanding.pollFirst();
+        
+        //Acknowledge under the lock so that multiple acks can never reach the broker out of order
+        if(ackTag >= 0) {
+            LOG.trace("Acknowledging receipt [delivery_tag<={}]", ackTag);
+            this.channel.basicAck(ackTag, true);
+        }
+    }
+    
+    /**
+     * Forgets every outstanding delivery once the channel has shut down. The broker requeues
+     * them itself, and their tags mean nothing to whichever channel replaces this one.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        this.outstanding.clear();
+        this.completed.clear();
+    }
+    
+    public synchronized int getOutstandingCount() {
+        return this.outstanding.size();
+    }
+}
@@ -0,0 +1,138 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package amqp.spring.camel.component;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+/**
+ * Periodically resizes a listener container between a minimum and maximum number of consumers.
+ * Each run samples the queue depth and the processing time recorded since the previous run; the
+ * container grows until the backlog can be drained within one interval, and shrinks one consumer
+ * at a time while the backlog is drained and consumers sit mostly idle. The first run only marks the
+ * start of the first interval, so the time the container takes to start isn't counted as idle.
+ */
+class ConsumerScaler implements Runnable {
+    private static transient final Logger LOG = LoggerFactory.getLogger(ConsumerScaler.class);
+    protected static final double SCALE_DOWN_UTILIZATION = 0.5;
+    
+    private final AbstractMessageListenerContainer container;
+    private final AmqpAdmin amqpAdmin;
+    private final String queueName;
+    private final int minConsumers;
+    private final int maxConsumers;
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private volatile int consumers;
+    //Zero until the first run
+    private long lastRun;
+    
+    public ConsumerScaler(AbstractMessageListenerContainer container, AmqpAdmin amqpAdmin, String queueName, int minConsumers, int maxConsumers) {
+        if(minConsumers < 1 || maxConsumers < minConsumers)
+            throw new IllegalArgumentException("Invalid consumer range ["+minConsumers+", "+maxConsumers+"] for queue "+queueName);
+        
+        this.container = container;
+        this.amqpAdmin = amqpAdmin;
+        this.queueName = queueName;
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+    }
+    
+    /**
+     * Sizes the container before it starts, clamping concurrentConsumers into the configured range.
+     */
+    public void initialize(int concurrentConsumers) {
+        resize(clamp(concurrentConsumers, this.minConsumers, this.maxConsumers));
+    }
+    
+    public int getConsumers() {
+        return this.consumers;
+    }
+    
+    /**
+     * Records time spent processing messages; called from the listener threads.
+     */
+    public void record(long nanos, int messages) {
+        this.busyNanos.add(nanos);
+        this.processed.add(messages);
+    }
+    
+    @Override
+    public void run() {
+        try {
+            long now = System.nanoTime();
+            long intervalNanos = now - this.lastRun;
+            boolean first = this.lastRun == 0;
+            this.lastRun = now;
+            
+            long busy = this.busyNanos.sumThenReset();
+            long count = this.processed.sumThenReset();
+            if(first)
+                return;
+            
+            Properties queueProperties = this.amqpAdmin.getQueueProperties(this.queueName);
+            if(queueProperties == null || intervalNanos <= 0)
+                return;
+            
+            Object messageCount = queueProperties.get(RabbitAdmin.QUEUE_MESSAGE_COUNT);
+            long depth = messageCount instanceof Number ? ((Number) messageCount).longValue() : 0;
+            long averageNanos = count > 0 ? busy / count : 0;
+            int target = targetConsumers(this.consumers, this.minConsumers, this.maxConsumers, depth, averageNanos, busy, intervalNanos);
+            if(target != this.consumers) {
+                LOG.info("Scaling consumers for queue {} from {} to {} [depth={}, avg_millis={}]",
+                        this.queueName, this.consumers, target, depth, TimeUnit.NANOSECONDS.toMillis(averageNanos));
+                resize(target);
+            }
+        } catch(Exception e) {
+            //Never let an exception escape, it would cancel the scheduled task
+            LOG.warn("Could not rescale consumers for queue {}", this.queueName, e);
+        }
+    }
+    
+    protected void resize(int target) {
+        if(this.container instanceof SimpleMessageListenerContainer)
+            ((SimpleMessageListenerContainer) this.container).setConcurrentConsumers(target);
+        else if(this.container instanceof DirectMessageListenerContainer)
+            ((DirectMessageListenerContainer) this.container).setConsumersPerQueue(target);
+        this.consumers = target;
+    }
+    
+    /**
+     * Decide how many consumers are needed for the next interval.
+     * @param current The current number of consumers
+     * @param depth The number of ready messages in the queue
+     * @param averageNanos The average processing time per message over the last interval, or 0 if none were processed
+     * @param busyNanos The total processing time over the last interval
+     * @param intervalNanos The length of the last interval
+     */
+    protected static int targetConsumers(int current, int min, int max, long depth, long averageNanos, long busyNanos, long intervalNanos) {
+        int target = current;
+        if(depth > 0 && averageNanos == 0) {
+            //A backlog but nothing finished; the current consumers may all be stuck on slow messages
+            target = current + 1;
+        } else {
+            long needed = (long) Math.ceil((double) depth * averageNanos / intervalNanos);
+            double utilization = (double) busyNanos / ((double) Math.max(current, 1) * intervalNanos);
+            if(needed > current)
+                target = (int) Math.min(needed, max);
+            else if(utilization < SCALE_DOWN_UTILIZATION)
+                target = current - 1;
+        }
+        
+        return clamp(target, min, max);
+    }
+    
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,128 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package amqp.spring.camel.component;
+
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sizes the prefetch window of a single channel to its bandwidth-delay product. The tuner keeps moving
+ * averages of the processing time per message and of the idle gap between finishing one message and
+ * receiving the next. A consumer that goes idle has drained its window before the broker refilled it,
+ * so the gap reveals the round trip between acknowledging and receiving: with a window of n messages,
+ * rtt = n * (gap + processing) - processing. The window is then sized to cover one round trip
+ * ((processing + rtt) / processing, plus one), limited by maxPrefetchCount and by how many messages of
+ * the average observed size fit in the memory limit.
+ * 
+ * The container's per-consumer prefetch is set to maxPrefetchCount; this tuner issues a channel-wide
+ * basicQos(n, global=true), which takes effect immediately on the running consumer.
+ */
+class PrefetchTuner {
+    private static transient final Logger LOG = LoggerFactory.getLogger(PrefetchTuner.class);
+    private static final double SMOOTHING = 0.2;
+    private static final long ADJUST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    //Gaps shorter than this are scheduling noise, not a starved consumer
+    private static final long IDLE_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    
+    private final Channel channel;
+    private final int maxPrefetch;
+    private final long memoryLimit;
+    private int prefetch;
+    private double processingNanos = 0;
+    private double gapNanos = 0;
+    private double messageSize = 0;
+    private double rttNanos = -1;
+    private long lastCompleted = 0;
+    private long lastAdjusted = System.nanoTime();
+    private boolean applied = false;
+    
+    public PrefetchTuner(Channel channel, int initialPrefetch, int maxPrefetch, long memoryLimit) {
+        this.channel = channel;
+        this.maxPrefetch = Math.max(1, maxPrefetch);
+        this.memoryLimit = memoryLimit;
+        this.prefetch = Math.max(1, Math.min(initialPrefetch, this.maxPrefetch));
+    }
+    
+    /**
+     * Records the arrival of a message.
+     * @return The arrival time, to be handed back to completed()
+     */
+    public synchronized long delivered(int size) {
+        //The consumer is already running with the container's prefetch; narrow it to the initial window
+        if(! this.applied) {
+            this.applied = true;
+            apply(this.prefetch);
+        }
+        
+        long now = System.nanoTime();
+        if(this.lastCompleted > 0) {
+            long gap = now - this.lastCompleted;
+            this.gapNanos = average(this.gapNanos, gap > IDLE_THRESHOLD_NANOS ? gap : 0);
+        }
+        this.messageSize = average(this.messageSize, size);
+        return now;
+    }
+    
+    /**
+     * Records the completion of a message and, at most once per second, re-sizes the window.
+     */
+    public synchronized void completed(long started) {
+        long now = System.nanoTime();
+        this.processingNanos = average(this.processingNanos, now - started);
+        this.lastCompleted = now;
+        
+        if(now - this.lastAdjusted < ADJUST_INTERVAL_NANOS)
+            return;
+        this.lastAdjusted = now;
+        
+        if(this.gapNanos > 0)
+            this.rttNanos = estimateRoundTrip(this.prefetch, this.processingNanos, this.gapNanos);
+        
+        int target = targetPrefetch(this.prefetch, this.maxPrefetch, this.memoryLimit, this.processingNanos, this.rttNanos, this.messageSize);
+        if(target != this.prefetch && apply(target)) {
+            LOG.debug("Adjusted prefetch from {} to {} [processing_micros={}, rtt_micros={}]", this.prefetch, target,
+                    (long) this.processingNanos / 1000, (long) this.rttNanos / 1000);
+            this.prefetch = target;
+        }
+    }
+    
+    private boolean apply(int prefetchCount) {
+        try {
+            this.channel.basicQos(prefetchCount, true);
+            return true;
+        } catch(IOException e) {
+            LOG.warn("Could not adjust prefetch to {}", prefetchCount, e);
+            return false;
+        }
+    }
+    
+    public synchronized int getPrefetch() {
+        return this.prefetch;
+    }
+    
+    protected static double estimateRoundTrip(int prefetch, double processingNanos, double gapNanos) {
+        return Math.max(0, prefetch * (gapNanos + processingNanos) - processingNanos);
+    }
+    
+    /**
+     * @param rttNanos The estimated round trip, or a negative value if none has been observed yet
+     */
+    protected static int targetPrefetch(int current, int maxPrefetch, long memoryLimit, double processingNanos, double rttNanos, double messageSize) {
+        long target = current;
+        if(rttNanos >= 0 && processingNanos > 0)
+            target = (long) Math.ceil((processingNanos + rttNanos) / processingNanos) + 1;
+        if(memoryLimit > 0 && messageSize > 0)
+            target = Math.min(target, (long) (memoryLimit / messageSize));
+        
+        return (int) Math.max(1, Math.min(maxPrefetch, target));
+    }
+    
+    private static double average(double average, double sample) {
+        return average == 0 ? sample : average + SMOOTHING * (sample - average);
+    }
+}
@@ -0,0 +1,46 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+/**
+ * Everything about a publish that is fixed for as long as a producer is started: the message converter,
+ * the default exchange and routing key, the body mode and the compiled header filter. Producers resolve
+ * this once at start up so that only the per-message parts are worked out for each exchange.
+ */
+class PublishTemplate {
+    private final MessageConverter messageConverter;
+    private final String exchangeName;
+    private final String routingKey;
+    private final boolean rawBody;
+    private final SpringAMQPHeaderFilter headerFilter;
+
+    PublishTemplate(SpringAMQPEndpoint endpoint, MessageConverter messageConverter) {
+        this.messageConverter = messageConverter;
+        this.exchangeName = endpoint.getExchangeName();
+        this.routingKey = endpoint.getRoutingKey();
+        this.rawBody = endpoint.isRawBody();
+        this.headerFilter = endpoint.getHeaderFilter();
+    }
+    
+    MessageConverter getMessageConverter() {
+        return this.messageConverter;
+    }
+    
+    String resolveExchangeName(org.apache.camel.Message message) {
+        String exchangeNameHeader = message.getHeader(SpringAMQPComponent.EXCHANGE_NAME_HEADER, String.class);
+        return exchangeNameHeader != null ? exchangeNameHeader : this.exchangeName;
+    }
+    
+    String resolveRoutingKey(org.apache.camel.Message message) {
+        String routingKeyHeader = message.getHeader(SpringAMQPComponent.ROUTING_KEY_HEADER, String.class);
+        return routingKeyHeader != null ? routingKeyHeader : this.routingKey;
+    }
+    
+    Message toAMQPMessage(org.apache.camel.Message message) {
+        return SpringAMQPMessage.toAMQPMessage(message, this.messageConverter, this.rawBody, this.headerFilter);
+    }
+}
@@ -6,6 +6,7 @@ package amqp.spring.camel.component;
 
 import com.rabbitmq.client.Channel;
 import org.aopalliance.aop.Advice;
+import org.apache.camel.AsyncCallback;
 import org.apache.camel.Exchange;
 import org.apache.camel.ExchangePattern;
 import org.apache.camel.Processor;
@@ -15,6 +16,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.AmqpConnectException;
 import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Address;
 import org.springframework.amqp.core.Binding;
@@ -24,10 +26,14 @@ import org.springframework.amqp.core.HeadersExchange;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.config.StatefulRetryOperationsInterceptorFactoryBean;
+import org.springframework.amqp.rabbit.connection.ChannelProxy;
 import org.springframework.amqp.rabbit.connection.Connection;
 import org.springframework.amqp.rabbit.connection.ConnectionListener;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareBatchMessageListener;
 import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
 import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.amqp.rabbit.retry.MessageKeyGenerator;
 import org.springframework.amqp.support.converter.MessageConverter;
@@ -38,9 +44,17 @@ import org.springframework.util.ErrorHandler;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.WeakHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionListener {
     private static transient final Logger LOG = LoggerFactory.getLogger(SpringAMQPConsumer.class);
@@ -49,6 +63,7 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
 
     private final SpringAMQPEndpoint endpoint;
     private final RabbitMQMessageListener messageListener;
+    private ScheduledExecutorService scaleTimer;
 
     public SpringAMQPConsumer(SpringAMQPEndpoint endpoint, Processor processor) {
         super(endpoint, processor);
@@ -62,20 +77,42 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
 
         if(! this.messageListener.listenerContainer.isActive())
             this.messageListener.start();
+        
+        if(this.messageListener.scaler != null && this.scaleTimer == null) {
+            long interval = this.endpoint.getScaleInterval();
+            this.scaleTimer = this.endpoint.getCamelContext().getExecutorServiceManager().newSingleThreadScheduledExecutor(this, "amqp-consumer-scaler");
+            this.scaleTimer.scheduleWithFixedDelay(this.messageListener.scaler, interval, interval, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public void doShutdown() throws Exception {
+        stopScaling();
         this.messageListener.shutdown();
         super.shutdown();
     }
 
     @Override
     public void doStop() throws Exception {
+        stopScaling();
         this.messageListener.shutdown();
         super.doStop();
     }
     
+    /**
+     * @return The listener batches are delivered to when consumerBatchSize is set
+     */
+    ChannelAwareBatchMessageListener getBatchListener() {
+        return this.messageListener::onMessageBatch;
+    }
+    
+    private void stopScaling() {
+        if(this.scaleTimer != null) {
+            this.scaleTimer.shutdownNow();
+            this.scaleTimer = null;
+        }
+    }
+    
     protected static Map<String, Object> parseKeyValues(String routingKey) {
         StringTokenizer tokenizer = new StringTokenizer(routingKey, "&|");
         Map<String, Object> pairs = new HashMap<>();
@@ -91,9 +128,96 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
         return pairs;
     }
 
+    protected void declareAMQPEntities() {
+        org.springframework.amqp.core.Exchange exchange = declareExchange();
+        Queue queue = declareQueue();
+        declareBinding(exchange, queue);
+    }
+
+    protected org.springframework.amqp.core.Exchange declareExchange() {
+        org.springframework.amqp.core.Exchange exchange = this.endpoint.createAMQPExchange();
+        if (this.endpoint.isUsingDefaultExchange()) {
+            LOG.debug("Using the default exchange; will not declare one for endpoint {}.", endpoint);
+        } else {
+            try {
+                this.endpoint.amqpAdministration.declareExchange(exchange);
+                LOG.info("Declared exchange {} for endpoint {}.", exchange.getName(), endpoint);
+            } catch (AmqpIOException e) {
+                LOG.warn(String.format("Could not declare exchange %s for endpoint %s; possible re-declaration of a different type?", exchange.getName(), endpoint.toString()), e);
+                // Be lenient:  Do not re-throw Exception because the exchange may already exist but just declared
+                // with different attributes, so let's go ahead and declare the queue and binding anyway.
+            } catch (AmqpConnectException e) {
+                LOG.error(String.format("Consumer cannot connect to broker for endpoint %s", this.endpoint.toString()), e);
+                throw e;
+            }
+        }
+        return exchange;
+    }
+
+    protected Queue declareQueue() {
+        //Determine queue arguments, including vendor extensions
+        Map<String, Object> queueArguments = new HashMap<>();
+        if(endpoint.getTimeToLive() != null)
+            queueArguments.put(TTL_QUEUE_ARGUMENT, endpoint.getTimeToLive());
+        if(endpoint.isHa() )
+            queueArguments.put(HA_POLICY_ARGUMENT, "all");
+
+        //Declare queue
+        Queue queue = new Queue(this.endpoint.getQueueName(), this.endpoint.isDurable(), this.endpoint.isExclusive(), this.endpoint.isAutodelete(), queueArguments);
+        this.endpoint.getAmqpAdministration().declareQueue(queue);
+        LOG.info("Declared queue {} for endpoint {}.", queue.getName(), endpoint);
+        return queue;
+    }
+
+    protected Binding declareBinding(org.springframework.amqp.core.Exchange exchange, Queue queue) {
+        Binding binding = null;
+
+        //Is this a header exchange? Bind the key/value pair(s)
+        if(exchange instanceof HeadersExchange) {
+            if(this.endpoint.getRoutingKey() == null)
+                throw new IllegalStateException("Specified a header exchange without a key/value match");
+
+            if(this.endpoint.getRoutingKey().contains("|") && this.endpoint.getRoutingKey().contains("&"))
+                throw new IllegalArgumentException("You cannot mix AND and OR expressions within a header binding");
+
+            Map<String, Object> keyValues = parseKeyValues(this.endpoint.getRoutingKey());
+            BindingBuilder.HeadersExchangeMapConfigurer mapConfig = BindingBuilder.bind(queue).to((HeadersExchange) exchange);
+            if(this.endpoint.getRoutingKey().contains("|"))
+                binding = mapConfig.whereAny(keyValues).match();
+            else
+                binding = mapConfig.whereAll(keyValues).match();
+
+        //Is this a fanout exchange? Just bind the queue and exchange directly
+        } else if(exchange instanceof FanoutExchange) {
+            binding = BindingBuilder.bind(queue).to((FanoutExchange) exchange);
+
+        //Perform routing key binding for direct or topic exchanges
+        } else {
+            binding = BindingBuilder.bind(queue).to(exchange).with(this.endpoint.getRoutingKey()).noargs();
+        }
+
+        if (this.endpoint.isUsingDefaultExchange()) {
+            LOG.debug("Using the default exchange for endpoint {}. Default exchange is implicitly bound to every queue, with a routing key equal to the queue name.", endpoint);
+        } else if (binding != null) {
+            LOG.info("Declaring binding {} for endpoint {}.", binding.getRoutingKey(), endpoint);
+            this.endpoint.getAmqpAdministration().declareBinding(binding);
+        }
+
+        return binding;
+    }
+
     @Override
     public void onCreate(Connection connection) {
         LOG.info("Network connection created to broker for endpoint {}", this.getEndpoint());
+
+        //The direct container does not consume through SpringAMQPExecutor, so re-declare on (re)connection instead
+        if(this.messageListener.isDirect() && this.endpoint.isCreateResources() && isRunAllowed()) {
+            try {
+                declareAMQPEntities();
+            } catch (Exception e) {
+                LOG.error("Could not declare AMQP entities for endpoint {}", this.endpoint, e);
+            }
+        }
     }
 
     @Override
@@ -106,12 +230,47 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
     //We have to ask the RabbitMQ Template for converters, the interface doesn't have a way to get MessageConverter
     private class RabbitMQMessageListener implements ChannelAwareMessageListener {
         private final MessageConverter msgConverter;
-        private final SimpleMessageListenerContainer listenerContainer;
+        private final AbstractMessageListenerContainer listenerContainer;
         private static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+        private final boolean consumerBatch;
+        private final boolean direct;
+        private final ConsumerScaler scaler;
+        private final Map<Channel, AcknowledgementTracker> acknowledgementTrackers = Collections.synchronizedMap(new WeakHashMap<>());
+        private final Map<Channel, PrefetchTuner> prefetchTuners = Collections.synchronizedMap(new WeakHashMap<>());
 
         public RabbitMQMessageListener(SpringAMQPEndpoint endpoint) {
-            this.listenerContainer = new SimpleMessageListenerContainer();
+            this.direct = SpringAMQPEndpoint.CONTAINER_TYPE_DIRECT.equals(endpoint.getContainerType());
+            this.consumerBatch = endpoint.getConsumerBatchSize() > 1;
+            if(this.direct) {
+                if(this.consumerBatch)
+                    throw new IllegalArgumentException("consumerBatchSize is not supported by the direct container type for endpoint "+endpoint.getEndpointUri());
+
+                //Listeners run on the connection's dispatch threads; consumers are restarted by the container's monitor
+                DirectMessageListenerContainer directContainer = new DirectMessageListenerContainer();
+                directContainer.setConsumersPerQueue(endpoint.getConcurrentConsumers());
+                directContainer.setMissingQueuesFatal(false);
+                this.listenerContainer = directContainer;
+            } else {
+                SimpleMessageListenerContainer simpleContainer = new SimpleMessageListenerContainer();
+                simpleContainer.setConcurrentConsumers(endpoint.getConcurrentConsumers());
+                simpleContainer.setReceiveTimeout(endpoint.getReceiveTimeout());
+
+                //Hand the route whole batches of deliveries rather than one message at a time
+                if(this.consumerBatch) {
+                    simpleContainer.setConsumerBatchEnabled(true);
+                    simpleContainer.setBatchSize(endpoint.getConsumerBatchSize());
+                }
+                this.listenerContainer = simpleContainer;
+            }
             this.listenerContainer.setTaskExecutor(new SpringAMQPExecutor(endpoint));
+            
+            //Let queue depth and processing time drive the number of consumers
+            if(endpoint.isAutoscaling()) {
+                this.scaler = new ConsumerScaler(this.listenerContainer, endpoint.getAmqpAdministration(), endpoint.getQueueName(), endpoint.getMinConsumers(), endpoint.getMaxConsumers());
+                this.scaler.initialize(endpoint.getConcurrentConsumers());
+            } else {
+                this.scaler = null;
+            }
 
             RabbitTemplate template = (RabbitTemplate) endpoint.getAmqpTemplate();
             if(template != null) {
@@ -123,8 +282,8 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
             }
 
             this.listenerContainer.setQueueNames(endpoint.getQueueName());
-            this.listenerContainer.setConcurrentConsumers(endpoint.getConcurrentConsumers());
-            this.listenerContainer.setPrefetchCount(endpoint.getPrefetchCount());
+            //With adaptive prefetch the container's prefetch is only the ceiling, each channel is tuned below it
+            this.listenerContainer.setPrefetchCount(endpoint.isAdaptivePrefetch() ? endpoint.getMaxPrefetchCount() : endpoint.getPrefetchCount());
             this.listenerContainer.setAcknowledgeMode(endpoint.getAcknowledgeMode());
 
             //Set error handling (send it to Camel)
@@ -133,7 +292,6 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
 
             //Set timeouts
             this.listenerContainer.setShutdownTimeout(DEFAULT_TIMEOUT_MILLIS);
-            this.listenerContainer.setReceiveTimeout(DEFAULT_TIMEOUT_MILLIS);
             this.listenerContainer.setRecoveryInterval(DEFAULT_TIMEOUT_MILLIS / 2);
 
             //Transactions are currently not supported
@@ -141,13 +299,21 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
         }
 
         public void start() {
-            this.listenerContainer.setMessageListener(this);
+            if(this.consumerBatch)
+                this.listenerContainer.setMessageListener((ChannelAwareBatchMessageListener) this::onMessageBatch);
+            else
+                this.listenerContainer.setMessageListener(this);
             this.listenerContainer.start();
             LOG.info("Started AMQP Async Listeners for {}", endpoint.getEndpointUri());
         }
         
+        public boolean isDirect() {
+            return this.direct;
+        }
+        
         public void stop() {
-            this.listenerContainer.setConcurrentConsumers(0);
+            if(this.listenerContainer instanceof SimpleMessageListenerContainer)
+                ((SimpleMessageListenerContainer) this.listenerContainer).setConcurrentConsumers(0);
             this.listenerContainer.setPrefetchCount(0);
             this.listenerContainer.stop();
         }
@@ -193,26 +359,111 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
             LOG.debug("Received message for routing key {}", amqpMessage.getMessageProperties().getReceivedRoutingKey());
             ExchangePattern exchangePattern = SpringAMQPMessage.getExchangePattern(amqpMessage);
             Exchange exchange = new DefaultExchange(endpoint, exchangePattern);
-            SpringAMQPMessage camelMessage = SpringAMQPMessage.fromAMQPMessage(endpoint.getCamelContext(), msgConverter, amqpMessage);
+            SpringAMQPMessage camelMessage = SpringAMQPMessage.fromAMQPMessage(endpoint.getCamelContext(), msgConverter, amqpMessage, endpoint.isRawBody(), endpoint.isLazyBody());
             exchange.setIn(camelMessage);
             
+            final PrefetchTuner tuner = getPrefetchTuner(channel);
+            long started = tuner != null ? tuner.delivered(amqpMessage.getBody().length) : System.nanoTime();
+            
+            if (endpoint.getAcknowledgeMode() == AcknowledgeMode.MANUAL) {
+                processAsync(amqpMessage, channel, exchange, tuner, started);
+                return;
+            }
+            
             try {
                 getProcessor().process(exchange);
+            } catch(Throwable t) {
+                exchange.setException(t);
+            }
+            recordProcessing(tuner, started, 1);
+            
+            sendReply(amqpMessage, exchange);
+        }
+        
+        protected PrefetchTuner getPrefetchTuner(Channel channel) {
+            if(! endpoint.isAdaptivePrefetch())
+                return null;
+            Channel target = getTargetChannel(channel);
+            return this.prefetchTuners.computeIfAbsent(target, c -> {
+                c.addShutdownListener(cause -> this.prefetchTuners.remove(c));
+                return new PrefetchTuner(c, endpoint.getPrefetchCount(), endpoint.getMaxPrefetchCount(), endpoint.getPrefetchMemoryLimit());
+            });
+        }
+        
+        /**
+         * Cached channel proxies survive channel recovery, but delivery tags restart at 1 on the
+         * replacement channel. Trackers are therefore kept per physical channel and closed with it.
+         */
+        protected AcknowledgementTracker getAcknowledgementTracker(Channel channel) {
+            Channel target = getTargetChannel(channel);
+            return this.acknowledgementTrackers.computeIfAbsent(target, c -> {
+                AcknowledgementTracker tracker = new AcknowledgementTracker(c);
+                c.addShutdownListener(cause -> {
+                    this.acknowledgementTrackers.remove(c);
+                    tracker.close();
+                });
+                return tracker;
+            });
+        }
+        
+        private Channel getTargetChannel(Channel channel) {
+            return channel instanceof ChannelProxy ? ((ChannelProxy) channel).getTargetChannel() : channel;
+        }
+        
+        protected void recordProcessing(PrefetchTuner tuner, long started, int messages) {
+            if(tuner != null)
+                tuner.completed(started);
+            if(this.scaler != null)
+                this.scaler.record(System.nanoTime() - started, messages);
+        }
 
-                if (endpoint.getAcknowledgeMode() == AcknowledgeMode.MANUAL) {
-                    long deliveryTag = amqpMessage.getMessageProperties().getDeliveryTag();
-                    LOG.trace("Acknowledging receipt [delivery_tag={}]", deliveryTag);
-                    channel.basicAck(deliveryTag, false);
+        /**
+         * Hand the exchange to the route without waiting for it to complete, so up to prefetchCount
+         * messages can be in flight through asynchronous routes. The delivery is acknowledged from the
+         * completion callback; completions may arrive in any order, and contiguous runs of completed
+         * deliveries are acknowledged together. Failed exchanges are rejected rather than acknowledged,
+         * and requeued unless the failure was an AmqpRejectAndDontRequeueException.
+         */
+        protected void processAsync(final Message amqpMessage, Channel channel, final Exchange exchange, final PrefetchTuner tuner, final long started) {
+            final AcknowledgementTracker tracker = getAcknowledgementTracker(channel);
+            final long deliveryTag = amqpMessage.getMessageProperties().getDeliveryTag();
+            tracker.delivered(deliveryTag);
+            
+            AsyncCallback callback = doneSync -> {
+                recordProcessing(tuner, started, 1);
+                try {
+                    if(exchange.isFailed())
+                        tracker.reject(deliveryTag, shouldRequeue(exchange.getException()));
+                    else
+                        tracker.complete(deliveryTag);
+                } catch(IOException e) {
+                    LOG.error("Could not acknowledge receipt [delivery_tag={}]", deliveryTag, e);
                 }
+                sendReply(amqpMessage, exchange);
+            };
+            
+            try {
+                getAsyncProcessor().process(exchange, callback);
             } catch(Throwable t) {
                 exchange.setException(t);
+                callback.done(true);
             }
-            
-            //Send a reply if one was requested
+        }
+        
+        //Follow the listener container's default: requeue unless told otherwise somewhere in the cause chain
+        protected boolean shouldRequeue(Throwable t) {
+            for(Throwable cause = t; cause != null; cause = cause.getCause()) {
+                if(cause instanceof AmqpRejectAndDontRequeueException)
+                    return false;
+            }
+            return true;
+        }
+        
+        //Send a reply if one was requested
+        protected void sendReply(Message amqpMessage, Exchange exchange) {
             Address replyToAddress = amqpMessage.getMessageProperties().getReplyToAddress();
             if(replyToAddress != null && endpoint.isAutoReply()) {
-                org.apache.camel.Message outMessage = exchange.getMessage();
-                SpringAMQPMessage replyMessage = new SpringAMQPMessage(outMessage);
+                org.apache.camel.Message replyMessage = exchange.getMessage();
 
                 // Camel exchange will contain a non-null exception if an unhandled exception has occurred,
                 // such as when using the DefaultErrorHandler with default configuration, or when
@@ -220,24 +471,87 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
                 // Exchange will not contain an exception (via getException()) if the exception has been handled,
                 // such as when using the DeadLetterChannel error handler with default configuration, but
                 // the Exchange property EXCEPTION_CAUGHT will contain the handled exception.
+                // Only then is the reply rewritten, into a copy that is swapped in as the outbound message.
+                // Otherwise the reply is read straight from the outbound message.
                 if (exchange.getException() != null) {
+                    replyMessage = new SpringAMQPMessage(replyMessage);
                     replyMessage.setHeader(SpringAMQPMessage.IS_EXCEPTION_CAUGHT, true);
                     replyMessage.setBody(exchange.getException());
+                    exchange.setMessage(replyMessage); //Swap out the outbound message
                 } else if (exchange.getProperty(Exchange.EXCEPTION_CAUGHT) != null) {
+                    replyMessage = new SpringAMQPMessage(replyMessage);
                     replyMessage.setHeader(SpringAMQPMessage.IS_EXCEPTION_CAUGHT, true);
                     replyMessage.setBody(exchange.getProperty(Exchange.EXCEPTION_CAUGHT));
+                    exchange.setMessage(replyMessage); //Swap out the outbound message
                 }
 
-                exchange.setMessage(replyMessage); //Swap out the outbound message
-
                 try {
-                    endpoint.getAmqpTemplate().send(replyToAddress.getExchangeName(), replyToAddress.getRoutingKey(), replyMessage.toAMQPMessage(msgConverter));
+                    endpoint.getAmqpTemplate().send(replyToAddress.getExchangeName(), replyToAddress.getRoutingKey(), SpringAMQPMessage.toAMQPMessage(replyMessage, msgConverter, endpoint.isRawBody(), endpoint.getHeaderFilter()));
                 } catch(AmqpConnectException e) {
                     LOG.error("AMQP Connection error, marking this connection as failed");
                     onClose(null);
                 }
             }
         }
+
+        /**
+         * Deliver a batch of AMQP messages to the route as a single exchange. The body is the list of
+         * converted message bodies, and the headers of each message are kept in the same order under
+         * the {@link SpringAMQPMessage#BATCH_HEADERS} header. Bodies are always converted up front, as
+         * lazyBody does not apply to batches; the headers are still read through on demand. In MANUAL
+         * mode the whole batch is acknowledged at once, or rejected at once if the exchange failed, and
+         * requeued unless the failure was an AmqpRejectAndDontRequeueException.
+         */
+        @Override
+        public void onMessageBatch(List<Message> amqpMessages, Channel channel) {
+            if(this.msgConverter == null)
+                throw new IllegalStateException("No message converter present - cannot processs messages!");
+            if(amqpMessages.isEmpty())
+                return;
+
+            LOG.debug("Received batch of {} messages", amqpMessages.size());
+            List<Object> bodies = new ArrayList<>(amqpMessages.size());
+            List<Map<String, Object>> headers = new ArrayList<>(amqpMessages.size());
+            for(Message amqpMessage : amqpMessages) {
+                SpringAMQPMessage camelMessage = SpringAMQPMessage.fromAMQPMessage(endpoint.getCamelContext(), msgConverter, amqpMessage, endpoint.isRawBody());
+                bodies.add(camelMessage.getBody());
+                headers.add(camelMessage.getHeaders());
+            }
+
+            Exchange exchange = new DefaultExchange(endpoint, ExchangePattern.InOnly);
+            SpringAMQPMessage camelMessage = new SpringAMQPMessage(endpoint.getCamelContext());
+            camelMessage.setBody(bodies);
+            camelMessage.setHeader(SpringAMQPMessage.BATCH_HEADERS, headers);
+            exchange.setIn(camelMessage);
+            exchange.setProperty(Exchange.BATCH_SIZE, amqpMessages.size());
+
+            long started = System.nanoTime();
+            try {
+                getProcessor().process(exchange);
+            } catch(Throwable t) {
+                exchange.setException(t);
+            }
+            recordProcessing(null, started, amqpMessages.size());
+
+            if (endpoint.getAcknowledgeMode() == AcknowledgeMode.MANUAL) {
+                long lastDeliveryTag = amqpMessages.get(amqpMessages.size() - 1).getMessageProperties().getDeliveryTag();
+                try {
+                    if(exchange.isFailed()) {
+                        boolean requeue = shouldRequeue(exchange.getException());
+                        LOG.trace("Rejecting batch [delivery_tag<={}, requeue={}]", lastDeliveryTag, requeue);
+                        channel.basicNack(lastDeliveryTag, true, requeue);
+                    } else {
+                        LOG.trace("Acknowledging receipt of batch [delivery_tag<={}]", lastDeliveryTag);
+                        channel.basicAck(lastDeliveryTag, true);
+                    }
+                } catch(IOException e) {
+                    LOG.error("Could not acknowledge batch [delivery_tag<={}]", lastDeliveryTag, e);
+                }
+            }
+
+            if(exchange.getException() != null)
+                getExceptionHandler().handleException("Error processing AMQP message batch", exchange, exchange.getException());
+        }
     }
 
     //If the producer does not generate an ID, let's do so now
@@ -269,12 +583,22 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
      * 3.) Both SimpleMessageListenerContainer and BlockingQueueConsumer have important
      * fields that are private without any getters, so subclassing either class fails to
      * provide access to needed functionality.
+     * The DirectMessageListenerContainer only uses its taskExecutor to start consumers,
+     * so for that container type declarations are also repeated whenever a connection is created.
      */
     private class SpringAMQPExecutor extends SimpleAsyncTaskExecutor {
         private final SpringAMQPEndpoint endpoint;
 
         SpringAMQPExecutor(SpringAMQPEndpoint endpoint) {
             this.endpoint = endpoint;
+            
+            if(endpoint.isUseVirtualThreads()) {
+                ThreadFactory virtualThreadFactory = VirtualThreads.newThreadFactory("amqp-consumer-");
+                if(virtualThreadFactory != null)
+                    setThreadFactory(virtualThreadFactory);
+                else
+                    LOG.warn("Virtual threads are not supported on Java {}, using platform threads for endpoint {}", System.getProperty("java.version"), endpoint);
+            }
         }
 
         @Deprecated
@@ -322,83 +646,5 @@ public class SpringAMQPConsumer extends DefaultConsumer implements ConnectionLis
                 }
             } while (error && !endpoint.isStoppingOrStopped());
         }
-
-        protected void declareAMQPEntities() {
-            org.springframework.amqp.core.Exchange exchange = declareExchange();
-            Queue queue = declareQueue();
-            declareBinding(exchange, queue);
-        }
-
-        protected org.springframework.amqp.core.Exchange declareExchange() {
-            org.springframework.amqp.core.Exchange exchange = this.endpoint.createAMQPExchange();
-            if (this.endpoint.isUsingDefaultExchange()) {
-                LOG.debug("Using the default exchange; will not declare one for endpoint {}.", endpoint);
-            } else {
-                try {
-                    this.endpoint.amqpAdministration.declareExchange(exchange);
-                    LOG.info("Declared exchange {} for endpoint {}.", exchange.getName(), endpoint);
-                } catch (AmqpIOException e) {
-                    LOG.warn(String.format("Could not declare exchange %s for endpoint %s; possible re-declaration of a different type?", exchange.getName(), endpoint.toString()), e);
-                    // Be lenient:  Do not re-throw Exception because the exchange may already exist but just declared
-                    // with different attributes, so let's go ahead and declare the queue and binding anyway.
-                } catch (AmqpConnectException e) {
-                    LOG.error(String.format("Consumer cannot connect to broker for endpoint %s", this.endpoint.toString()), e);
-                    throw e;
-                }
-            }
-            return exchange;
-        }
-
-        protected Queue declareQueue() {
-            //Determine queue arguments, including vendor extensions
-            Map<String, Object> queueArguments = new HashMap<>();
-            if(endpoint.getTimeToLive() != null)
-                queueArguments.put(TTL_QUEUE_ARGUMENT, endpoint.getTimeToLive());
-            if(endpoint.isHa() )
-                queueArguments.put(HA_POLICY_ARGUMENT, "all");
-
-            //Declare queue
-            Queue queue = new Queue(this.endpoint.getQueueName(), this.endpoint.isDurable(), this.endpoint.isExclusive(), this.endpoint.isAutodelete(), queueArguments);
-            this.endpoint.getAmqpAdministration().declareQueue(queue);
-            LOG.info("Declared queue {} for endpoint {}.", queue.getName(), endpoint);
-            return queue;
-        }
-
-        protected Binding declareBinding(org.springframework.amqp.core.Exchange exchange, Queue queue) {
-            Binding binding = null;
-
-            //Is this a header exchange? Bind the key/value pair(s)
-            if(exchange instanceof HeadersExchange) {
-                if(this.endpoint.getRoutingKey() == null)
-                    throw new IllegalStateException("Specified a header exchange without a key/value match");
-
-                if(this.endpoint.getRoutingKey().contains("|") && this.endpoint.getRoutingKey().contains("&"))
-                    throw new IllegalArgumentException("You cannot mix AND and OR expressions within a header binding");
-
-                Map<String, Object> keyValues = parseKeyValues(this.endpoint.getRoutingKey());
-                BindingBuilder.HeadersExchangeMapConfigurer mapConfig = BindingBuilder.bind(queue).to((HeadersExchange) exchange);
-                if(this.endpoint.getRoutingKey().contains("|"))
-                    binding = mapConfig.whereAny(keyValues).match();
-                else
-                    binding = mapConfig.whereAll(keyValues).match();
-
-            //Is this a fanout exchange? Just bind the queue and exchange directly
-            } else if(exchange instanceof FanoutExchange) {
-                binding = BindingBuilder.bind(queue).to((FanoutExchange) exchange);
-
-            //Perform routing key binding for direct or topic exchanges
-            } else {
-                binding = BindingBuilder.bind(queue).to(exchange).with(this.endpoint.getRoutingKey()).noargs();
-            }
-
-            if (this.endpoint.isUsingDefaultExchange()) {
-                LOG.debug("Using the default exchange for endpoint {}. Default exchange is implicitly bound to every queue, with a routing key equal to the queue name.", endpoint);
-            } else if (binding != null) {
-                LOG.info("Declaring binding {} for endpoint {}.", binding.getRoutingKey(), endpoint);
-                this.endpoint.getAmqpAdministration().declareBinding(binding);
-            }
-
-            return binding;
-        }
     }
 }
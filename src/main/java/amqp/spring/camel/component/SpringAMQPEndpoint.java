@@ -4,8 +4,13 @@
 
 package amqp.spring.camel.component;
 
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.camel.*;
+import org.apache.camel.spi.HeaderFilterStrategy;
+import org.apache.camel.spi.HeaderFilterStrategyAware;
 import org.apache.camel.support.DefaultEndpoint;
+import org.apache.camel.util.UnsafeUriCharactersEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.AcknowledgeMode;
@@ -28,10 +33,19 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
  * <code>spring-amqp:exchange?params=values</code><br>
  * And the ROUTING_KEY header could be set to the appropriate routing key.
  */
-public class SpringAMQPEndpoint extends DefaultEndpoint {
+public class SpringAMQPEndpoint extends DefaultEndpoint implements HeaderFilterStrategyAware {
     private static transient final Logger LOG = LoggerFactory.getLogger(SpringAMQPEndpoint.class);
     
     private static final String DEFAULT_EXCHANGE_NAME = "";
+    public static final String CONTAINER_TYPE_SIMPLE = "simple";
+    public static final String CONTAINER_TYPE_DIRECT = "direct";
+    private static final long DEFAULT_CONFIRM_TIMEOUT_MILLIS = 30000;
+    private static final long DEFAULT_REPLY_TIMEOUT_MILLIS = 5000;
+    private static final long DEFAULT_BATCH_TIMEOUT_MILLIS = 100;
+    private static final long DEFAULT_RECEIVE_TIMEOUT_MILLIS = 1000;
+    private static final long DEFAULT_SCALE_INTERVAL_MILLIS = 5000;
+    private static final int DEFAULT_MAX_PREFETCH_COUNT = 250;
+    private static final long DEFAULT_PREFETCH_MEMORY_LIMIT = 16 * 1024 * 1024;
     
     protected AmqpAdmin amqpAdministration;
     private AmqpTemplate amqpTemplate;
@@ -52,6 +66,32 @@ public class SpringAMQPEndpoint extends DefaultEndpoint {
     private Integer timeToLive = null;
     private AcknowledgeMode acknowledgeMode = AcknowledgeMode.NONE;
     private boolean createResources = true;
+    private boolean publisherConfirms = false;
+    private long confirmTimeout = DEFAULT_CONFIRM_TIMEOUT_MILLIS;
+    private boolean asyncRequestReply = false;
+    private long replyTimeout = DEFAULT_REPLY_TIMEOUT_MILLIS;
+    private int batchSize = 0;
+    private long batchTimeout = DEFAULT_BATCH_TIMEOUT_MILLIS;
+    private int consumerBatchSize = 0;
+    private long receiveTimeout = DEFAULT_RECEIVE_TIMEOUT_MILLIS;
+    private String containerType = CONTAINER_TYPE_SIMPLE;
+    private boolean useVirtualThreads = false;
+    private int minConsumers = 1;
+    private int maxConsumers = 0;
+    private long scaleInterval = DEFAULT_SCALE_INTERVAL_MILLIS;
+    private boolean adaptivePrefetch = false;
+    private int maxPrefetchCount = DEFAULT_MAX_PREFETCH_COUNT;
+    private long prefetchMemoryLimit = DEFAULT_PREFETCH_MEMORY_LIMIT;
+    private boolean rawBody = false;
+    private boolean lazyBody = false;
+    private HeaderFilterStrategy headerFilterStrategy;
+    private String includeHeaders;
+    private String excludeHeaders;
+    private int maxHeaderSize = 0;
+    private volatile SpringAMQPHeaderFilter headerFilter;
+    //Kept by the endpoint so the counts survive the filter being rebuilt
+    private final LongAdder droppedHeaders = new LongAdder();
+    private final LongAdder headerBytesSaved = new LongAdder();
     
     //The second and third parameters to the URI can be interchangable based on the context.
     //Place them here until we determine if we're a consumer or producer.
@@ -265,6 +305,232 @@ public class SpringAMQPEndpoint extends DefaultEndpoint {
         this.createResources = createResources;
     }
 
+    public boolean isPublisherConfirms() {
+        return publisherConfirms;
+    }
+
+    public void setPublisherConfirms(boolean publisherConfirms) {
+        this.publisherConfirms = publisherConfirms;
+    }
+
+    public long getConfirmTimeout() {
+        return confirmTimeout;
+    }
+
+    /**
+     * @param confirmTimeout Milliseconds a synchronous confirmed publish waits for the broker to confirm it
+     */
+    public void setConfirmTimeout(long confirmTimeout) {
+        this.confirmTimeout = confirmTimeout;
+    }
+
+    public boolean isAsyncRequestReply() {
+        return asyncRequestReply;
+    }
+
+    public void setAsyncRequestReply(boolean asyncRequestReply) {
+        this.asyncRequestReply = asyncRequestReply;
+    }
+
+    public long getReplyTimeout() {
+        return replyTimeout;
+    }
+
+    public void setReplyTimeout(long replyTimeout) {
+        this.replyTimeout = replyTimeout;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getBatchTimeout() {
+        return batchTimeout;
+    }
+
+    public void setBatchTimeout(long batchTimeout) {
+        this.batchTimeout = batchTimeout;
+    }
+
+    public int getConsumerBatchSize() {
+        return consumerBatchSize;
+    }
+
+    public void setConsumerBatchSize(int consumerBatchSize) {
+        this.consumerBatchSize = consumerBatchSize;
+    }
+
+    public long getReceiveTimeout() {
+        return receiveTimeout;
+    }
+
+    public void setReceiveTimeout(long receiveTimeout) {
+        this.receiveTimeout = receiveTimeout;
+    }
+
+    public String getContainerType() {
+        return containerType;
+    }
+
+    public void setContainerType(String containerType) {
+        if(containerType == null)
+            throw new IllegalArgumentException("Container type cannot be null");
+        String type = containerType.toLowerCase(Locale.ROOT);
+        if(! CONTAINER_TYPE_SIMPLE.equals(type) && ! CONTAINER_TYPE_DIRECT.equals(type))
+            throw new IllegalArgumentException("Unknown container type "+containerType);
+        this.containerType = type;
+    }
+
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    public int getMinConsumers() {
+        return minConsumers;
+    }
+
+    public void setMinConsumers(int minConsumers) {
+        this.minConsumers = minConsumers;
+    }
+
+    public int getMaxConsumers() {
+        return maxConsumers;
+    }
+
+    public void setMaxConsumers(int maxConsumers) {
+        this.maxConsumers = maxConsumers;
+    }
+
+    public long getScaleInterval() {
+        return scaleInterval;
+    }
+
+    public void setScaleInterval(long scaleInterval) {
+        this.scaleInterval = scaleInterval;
+    }
+
+    public boolean isAdaptivePrefetch() {
+        return adaptivePrefetch;
+    }
+
+    public void setAdaptivePrefetch(boolean adaptivePrefetch) {
+        this.adaptivePrefetch = adaptivePrefetch;
+    }
+
+    public int getMaxPrefetchCount() {
+        return maxPrefetchCount;
+    }
+
+    public void setMaxPrefetchCount(int maxPrefetchCount) {
+        this.maxPrefetchCount = maxPrefetchCount;
+    }
+
+    public long getPrefetchMemoryLimit() {
+        return prefetchMemoryLimit;
+    }
+
+    public void setPrefetchMemoryLimit(long prefetchMemoryLimit) {
+        this.prefetchMemoryLimit = prefetchMemoryLimit;
+    }
+
+    public boolean isRawBody() {
+        return rawBody;
+    }
+
+    public void setRawBody(boolean rawBody) {
+        this.rawBody = rawBody;
+    }
+
+    public boolean isLazyBody() {
+        return lazyBody;
+    }
+
+    public void setLazyBody(boolean lazyBody) {
+        this.lazyBody = lazyBody;
+    }
+
+    @Override
+    public HeaderFilterStrategy getHeaderFilterStrategy() {
+        return headerFilterStrategy;
+    }
+
+    @Override
+    public void setHeaderFilterStrategy(HeaderFilterStrategy headerFilterStrategy) {
+        this.headerFilterStrategy = headerFilterStrategy;
+        this.headerFilter = null;
+    }
+
+    public String getIncludeHeaders() {
+        return includeHeaders;
+    }
+
+    /**
+     * @param includeHeaders Comma separated header names (* is a wildcard); only matching headers are published
+     */
+    public void setIncludeHeaders(String includeHeaders) {
+        this.includeHeaders = includeHeaders;
+        this.headerFilter = null;
+    }
+
+    public String getExcludeHeaders() {
+        return excludeHeaders;
+    }
+
+    /**
+     * @param excludeHeaders Comma separated header names (* is a wildcard) that are not published
+     */
+    public void setExcludeHeaders(String excludeHeaders) {
+        this.excludeHeaders = excludeHeaders;
+        this.headerFilter = null;
+    }
+
+    public int getMaxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    /**
+     * @param maxHeaderSize Upper bound in bytes on the headers copied onto each published message, or 0 for none
+     */
+    public void setMaxHeaderSize(int maxHeaderSize) {
+        this.maxHeaderSize = maxHeaderSize;
+        this.headerFilter = null;
+    }
+
+    /**
+     * @return The compiled header filter, or null if every header is published
+     */
+    public SpringAMQPHeaderFilter getHeaderFilter() {
+        SpringAMQPHeaderFilter filter = this.headerFilter;
+        if(filter == null && (this.headerFilterStrategy != null || this.includeHeaders != null || this.excludeHeaders != null || this.maxHeaderSize > 0)) {
+            filter = new SpringAMQPHeaderFilter(this.headerFilterStrategy, this.includeHeaders, this.excludeHeaders, this.maxHeaderSize, this.droppedHeaders, this.headerBytesSaved);
+            this.headerFilter = filter;
+        }
+        return filter;
+    }
+
+    /**
+     * @return Estimated header bytes left off published messages by the header filter, including
+     * those saved before the filter options were last changed
+     */
+    public long getHeaderBytesSaved() {
+        return this.headerBytesSaved.sum();
+    }
+
+    /**
+     * @return True if consumers should be scaled between minConsumers and maxConsumers at runtime
+     */
+    public boolean isAutoscaling() {
+        return this.maxConsumers > 0;
+    }
+
     @Override
     protected String createEndpointUri() {
         StringBuilder builder = new StringBuilder("spring-amqp:").append(this.exchangeName);
@@ -282,6 +548,32 @@ public class SpringAMQPEndpoint extends DefaultEndpoint {
         	builder.append("&x-ha-policy=all");
         builder.append("&autoReply=").append(this.autoReply);
         builder.append("&createResources=").append(this.createResources);
+        if ( ! CONTAINER_TYPE_SIMPLE.equals(this.containerType) )
+            builder.append("&containerType=").append(this.containerType);
+        if ( this.useVirtualThreads )
+            builder.append("&useVirtualThreads=true");
+        if ( this.rawBody )
+            builder.append("&rawBody=true");
+        if ( this.lazyBody )
+            builder.append("&lazyBody=true");
+        if ( this.includeHeaders != null )
+            builder.append("&includeHeaders=").append(UnsafeUriCharactersEncoder.encode(this.includeHeaders));
+        if ( this.excludeHeaders != null )
+            builder.append("&excludeHeaders=").append(UnsafeUriCharactersEncoder.encode(this.excludeHeaders));
+        if ( this.maxHeaderSize > 0 )
+            builder.append("&maxHeaderSize=").append(this.maxHeaderSize);
+        if ( this.publisherConfirms )
+            builder.append("&publisherConfirms=true&confirmTimeout=").append(this.confirmTimeout);
+        if ( this.asyncRequestReply )
+            builder.append("&asyncRequestReply=true&replyTimeout=").append(this.replyTimeout);
+        if ( this.batchSize > 1 )
+            builder.append("&batchSize=").append(this.batchSize).append("&batchTimeout=").append(this.batchTimeout);
+        if ( this.consumerBatchSize > 1 )
+            builder.append("&consumerBatchSize=").append(this.consumerBatchSize).append("&receiveTimeout=").append(this.receiveTimeout);
+        if ( this.adaptivePrefetch )
+            builder.append("&adaptivePrefetch=true&maxPrefetchCount=").append(this.maxPrefetchCount).append("&prefetchMemoryLimit=").append(this.prefetchMemoryLimit);
+        if ( isAutoscaling() )
+            builder.append("&minConsumers=").append(this.minConsumers).append("&maxConsumers=").append(this.maxConsumers).append("&scaleInterval=").append(this.scaleInterval);
         
         return builder.toString();        
     }
@@ -4,10 +4,20 @@
 
 package amqp.spring.camel.component;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
+import org.apache.camel.Exchange;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
 
 public class SpringAMQPHeader {
     // The (settable) AMQP Basic Properties
@@ -22,48 +32,25 @@ public class SpringAMQPHeader {
     public static final String DELIVERY_MODE = "deliveryMode";
     public static final String TYPE = "type";
     
+    //Routing headers are reserved but don't map to a property
+    private static final BiConsumer<MessageProperties, Object> SKIP = (properties, value) -> {};
+    //How each reserved header name is applied to an outgoing message; built once, so the per-header cost is one hash lookup
+    private static final Map<String, BiConsumer<MessageProperties, Object>> HEADER_PLAN = createHeaderPlan();
+    //How each basic property is read back as a header on receipt; case insensitive, like Camel's headers
+    static final Map<String, Function<MessageProperties, Object>> PROPERTY_READERS = createPropertyReaders();
+    //The order headers are dropped in when they don't fit the size budget
+    private static final Comparator<Map.Entry<String, Object>> BY_SIZE_DESCENDING = Comparator
+            .comparingInt((Map.Entry<String, Object> entry) -> SpringAMQPHeaderFilter.estimateSize(entry.getKey(), entry.getValue()))
+            .reversed()
+            .thenComparing(Map.Entry::getKey);
+    
     public static Message setBasicPropertiesFromHeaders(Message msg, Map<String, Object> headers) {
+        MessageProperties properties = msg.getMessageProperties();
         for (Map.Entry<String, Object> headerEntry : headers.entrySet()) {
             String headerKey = headerEntry.getKey();
-            if (headerKey != null) {
-                Object headerValue = headerEntry.getValue();
-                String headerValueString = headerValue==null ? null : headerValue.toString();
-            
-                switch (headerKey) {
-                    case CONTENT_ENCODING:
-                        msg.getMessageProperties().setContentEncoding(headerValueString);
-                        break;
-                    case CONTENT_TYPE:
-                        msg.getMessageProperties().setContentType(headerValueString);
-                        break;
-                    case MESSAGE_ID:
-                        msg.getMessageProperties().setMessageId(headerValueString);
-                        break;
-                    case CORRELATION_ID:
-                        msg.getMessageProperties().setCorrelationId(headerValueString);
-                        break;
-                    case APP_ID:
-                        msg.getMessageProperties().setAppId(headerValueString);
-                        break;
-                    case EXPIRATION:
-                        msg.getMessageProperties().setExpiration(headerValueString);
-                        break;
-                    case PRIORITY:
-                        Integer priority = headerValueString != null ? Integer.parseInt(headerValueString) : null;
-                        msg.getMessageProperties().setPriority(priority);
-                        break;
-                    case REPLY_TO:
-                        msg.getMessageProperties().setReplyTo(headerValueString);
-                        break;
-                    case DELIVERY_MODE:
-                        MessageDeliveryMode deliveryMode = headerValueString != null ? MessageDeliveryMode.fromInt(Integer.parseInt(headerValueString)) : null;
-                        msg.getMessageProperties().setDeliveryMode(deliveryMode);
-                        break;
-                    case TYPE:
-                        msg.getMessageProperties().setType(headerValueString);
-                        break;
-                }
-            }
+            BiConsumer<MessageProperties, Object> action = HEADER_PLAN.get(headerKey);
+            if (action != null)
+                action.accept(properties, headerEntry.getValue());
         }
         
         return msg;
@@ -93,24 +80,71 @@ public class SpringAMQPHeader {
     }
     
     public static Message copyHeaders(Message msg, Map<String, Object> headers) {
+        Map<String, Object> amqpHeaders = msg.getMessageProperties().getHeaders();
         for(Map.Entry<String, Object> headerEntry : headers.entrySet()) {
-
             // headers used for setting basic properties and routing key are skipped
-            if ( !CONTENT_ENCODING.equals(headerEntry.getKey()) &&
-                    !CONTENT_TYPE.equals(headerEntry.getKey()) &&
-                    !MESSAGE_ID.equals(headerEntry.getKey()) &&
-                    !CORRELATION_ID.equals(headerEntry.getKey()) &&
-                    !APP_ID.equals(headerEntry.getKey()) &&
-                    !EXPIRATION.equals(headerEntry.getKey()) &&
-                    !PRIORITY.equals(headerEntry.getKey()) &&
-                    !REPLY_TO.equals(headerEntry.getKey()) &&
-                    !DELIVERY_MODE.equals(headerEntry.getKey()) &&
-                    !TYPE.equals(headerEntry.getKey()) &&
-                    !SpringAMQPComponent.ROUTING_KEY_HEADER.equals(headerEntry.getKey()) &&
-                    !SpringAMQPComponent.EXCHANGE_NAME_HEADER.equals(headerEntry.getKey()) &&
-                    !msg.getMessageProperties().getHeaders().containsKey(headerEntry.getKey())) {
-                msg.getMessageProperties().setHeader(headerEntry.getKey(), headerEntry.getValue());
+            String headerKey = headerEntry.getKey();
+            if (! HEADER_PLAN.containsKey(headerKey) && ! amqpHeaders.containsKey(headerKey))
+                amqpHeaders.put(headerKey, headerEntry.getValue());
+        }
+        
+        return msg;
+    }
+    
+    /**
+     * Sets basic properties from their headers and copies the remaining headers in a single pass;
+     * equivalent to setBasicPropertiesFromHeaders followed by copyHeaders
+     */
+    public static Message mapHeaders(Message msg, Map<String, Object> headers) {
+        return mapHeaders(msg, headers, null, null);
+    }
+    
+    /**
+     * As mapHeaders, but only copies the custom headers that pass the given filter (which may be null)
+     */
+    public static Message mapHeaders(Message msg, Map<String, Object> headers, SpringAMQPHeaderFilter filter, Exchange exchange) {
+        MessageProperties properties = msg.getMessageProperties();
+        Map<String, Object> amqpHeaders = properties.getHeaders();
+        int maxHeaderSize = filter == null ? 0 : filter.getMaxHeaderSize();
+        int headerSize = 0;
+        //With a size budget, headers are only copied once it is known which of them fit
+        List<Map.Entry<String, Object>> budgeted = maxHeaderSize > 0 ? new ArrayList<>() : null;
+        for(Map.Entry<String, Object> headerEntry : headers.entrySet()) {
+            String headerKey = headerEntry.getKey();
+            Object headerValue = headerEntry.getValue();
+            BiConsumer<MessageProperties, Object> action = HEADER_PLAN.get(headerKey);
+            if (action != null) {
+                action.accept(properties, headerValue);
+            } else if (! amqpHeaders.containsKey(headerKey)) {
+                if (filter != null && ! filter.accept(headerKey, headerValue, exchange)) {
+                    filter.dropped(SpringAMQPHeaderFilter.estimateSize(headerKey, headerValue));
+                    continue;
+                }
+                
+                if (budgeted != null) {
+                    headerSize += SpringAMQPHeaderFilter.estimateSize(headerKey, headerValue);
+                    budgeted.add(headerEntry);
+                } else {
+                    amqpHeaders.put(headerKey, headerValue);
+                }
+            }
+        }
+        
+        if (budgeted != null) {
+            if (headerSize > maxHeaderSize) {
+                //Drop the largest headers first; ties are broken by name so the outcome doesn't depend on map order
+                budgeted.sort(BY_SIZE_DESCENDING);
+                int dropped = 0;
+                while (headerSize > maxHeaderSize) {
+                    Map.Entry<String, Object> headerEntry = budgeted.get(dropped++);
+                    int size = SpringAMQPHeaderFilter.estimateSize(headerEntry.getKey(), headerEntry.getValue());
+                    headerSize -= size;
+                    filter.dropped(size);
+                }
+                budgeted = budgeted.subList(dropped, budgeted.size());
             }
+            for (Map.Entry<String, Object> headerEntry : budgeted)
+                amqpHeaders.put(headerEntry.getKey(), headerEntry.getValue());
         }
         
         return msg;
@@ -125,4 +159,52 @@ public class SpringAMQPHeader {
         
         return msg;
     }
+    
+    private static Map<String, BiConsumer<MessageProperties, Object>> createHeaderPlan() {
+        Map<String, BiConsumer<MessageProperties, Object>> plan = new HashMap<>();
+        plan.put(CONTENT_ENCODING, (properties, value) -> properties.setContentEncoding(asString(value)));
+        plan.put(CONTENT_TYPE, (properties, value) -> properties.setContentType(asString(value)));
+        plan.put(MESSAGE_ID, (properties, value) -> properties.setMessageId(asString(value)));
+        plan.put(CORRELATION_ID, (properties, value) -> properties.setCorrelationId(asString(value)));
+        plan.put(APP_ID, (properties, value) -> properties.setAppId(asString(value)));
+        plan.put(EXPIRATION, (properties, value) -> properties.setExpiration(asString(value)));
+        plan.put(PRIORITY, (properties, value) -> properties.setPriority(asInteger(value)));
+        plan.put(REPLY_TO, (properties, value) -> properties.setReplyTo(asString(value)));
+        plan.put(DELIVERY_MODE, (properties, value) -> {
+            Integer deliveryMode = asInteger(value);
+            properties.setDeliveryMode(deliveryMode != null ? MessageDeliveryMode.fromInt(deliveryMode) : null);
+        });
+        plan.put(TYPE, (properties, value) -> properties.setType(asString(value)));
+        plan.put(SpringAMQPComponent.ROUTING_KEY_HEADER, SKIP);
+        plan.put(SpringAMQPComponent.EXCHANGE_NAME_HEADER, SKIP);
+        return Collections.unmodifiableMap(plan);
+    }
+    
+    private static Map<String, Function<MessageProperties, Object>> createPropertyReaders() {
+        Map<String, Function<MessageProperties, Object>> readers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        readers.put(MESSAGE_ID, MessageProperties::getMessageId);
+        readers.put(CORRELATION_ID, MessageProperties::getCorrelationId);
+        readers.put(APP_ID, MessageProperties::getAppId);
+        readers.put(CONTENT_ENCODING, MessageProperties::getContentEncoding);
+        readers.put(CONTENT_TYPE, MessageProperties::getContentType);
+        readers.put(EXPIRATION, MessageProperties::getExpiration);
+        readers.put(PRIORITY, MessageProperties::getPriority);
+        readers.put(REPLY_TO, MessageProperties::getReplyTo);
+        readers.put(DELIVERY_MODE, properties -> {
+            MessageDeliveryMode deliveryMode = properties.getReceivedDeliveryMode();
+            return deliveryMode == null ? null : MessageDeliveryMode.toInt(deliveryMode);
+        });
+        readers.put(TYPE, MessageProperties::getType);
+        return Collections.unmodifiableMap(readers);
+    }
+    
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+    
+    private static Integer asInteger(Object value) {
+        if (value == null || value instanceof Integer)
+            return (Integer) value;
+        return Integer.parseInt(value.toString());
+    }
 }
@@ -0,0 +1,161 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import org.apache.camel.Exchange;
+import org.apache.camel.spi.HeaderFilterStrategy;
+
+/**
+ * Decides which Camel headers are copied onto outgoing AMQP messages
+ * 
+ * A header is copied if it matches includeHeaders (when given), doesn't match excludeHeaders and isn't
+ * filtered by the HeaderFilterStrategy. Patterns are comma separated, case insensitive and may use * as
+ * a wildcard; they are compiled once into a single regular expression each. When maxHeaderSize is set
+ * and the (estimated) encoded size of the copied headers exceeds it, the largest headers are dropped
+ * until the rest fit, so the same headers are always kept whatever order they are held in. Basic
+ * properties and routing headers are never filtered.
+ */
+public class SpringAMQPHeaderFilter {
+    private final HeaderFilterStrategy headerFilterStrategy;
+    private final Pattern includePattern;
+    private final Pattern excludePattern;
+    private final int maxHeaderSize;
+    private final LongAdder droppedHeaders;
+    private final LongAdder bytesSaved;
+
+    public SpringAMQPHeaderFilter(HeaderFilterStrategy headerFilterStrategy, String includeHeaders, String excludeHeaders, int maxHeaderSize) {
+        this(headerFilterStrategy, includeHeaders, excludeHeaders, maxHeaderSize, new LongAdder(), new LongAdder());
+    }
+    
+    /**
+     * Counts into the given totals, so they carry over when a reconfigured filter replaces this one
+     */
+    SpringAMQPHeaderFilter(HeaderFilterStrategy headerFilterStrategy, String includeHeaders, String excludeHeaders, int maxHeaderSize, LongAdder droppedHeaders, LongAdder bytesSaved) {
+        this.headerFilterStrategy = headerFilterStrategy;
+        this.includePattern = compile(includeHeaders);
+        this.excludePattern = compile(excludeHeaders);
+        this.maxHeaderSize = maxHeaderSize;
+        this.droppedHeaders = droppedHeaders;
+        this.bytesSaved = bytesSaved;
+    }
+    
+    /**
+     * @return True if the header may be copied, before taking the size budget into account
+     */
+    public boolean accept(String name, Object value, Exchange exchange) {
+        if(this.includePattern != null && ! this.includePattern.matcher(name).matches())
+            return false;
+        if(this.excludePattern != null && this.excludePattern.matcher(name).matches())
+            return false;
+        return this.headerFilterStrategy == null || ! this.headerFilterStrategy.applyFilterToCamelHeaders(name, value, exchange);
+    }
+    
+    /**
+     * @return Zero if there's no limit on the total size of the copied headers
+     */
+    public int getMaxHeaderSize() {
+        return this.maxHeaderSize;
+    }
+    
+    void dropped(int size) {
+        this.droppedHeaders.increment();
+        this.bytesSaved.add(size);
+    }
+    
+    /**
+     * @return Headers left off outgoing messages so far
+     */
+    public long getDroppedHeaders() {
+        return this.droppedHeaders.sum();
+    }
+    
+    /**
+     * @return Estimated bytes left off outgoing messages so far
+     */
+    public long getBytesSaved() {
+        return this.bytesSaved.sum();
+    }
+    
+    /**
+     * @return The approximate number of bytes the header adds to an AMQP field table
+     */
+    public static int estimateSize(String name, Object value) {
+        //Short string name, one type octet, then the value
+        return 2 + utf8Length(name) + estimateValueSize(value);
+    }
+    
+    private static int estimateValueSize(Object value) {
+        if(value == null || value instanceof Boolean || value instanceof Byte)
+            return 1;
+        if(value instanceof Short)
+            return 2;
+        if(value instanceof Integer || value instanceof Float)
+            return 4;
+        if(value instanceof Number || value instanceof Date)
+            return 8;
+        if(value instanceof byte[])
+            return 4 + ((byte[]) value).length;
+        if(value instanceof String)
+            return 4 + utf8Length((String) value);
+        if(value instanceof Map) {
+            int size = 4;
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+                size += estimateSize(String.valueOf(entry.getKey()), entry.getValue());
+            return size;
+        }
+        if(value instanceof List) {
+            int size = 4;
+            for(Object element : (List<?>) value)
+                size += 1 + estimateValueSize(element);
+            return size;
+        }
+        return 4 + value.toString().length();
+    }
+    
+    //The encoded length, counted without encoding
+    private static int utf8Length(String string) {
+        int length = string.length();
+        int bytes = length;
+        for(int i = 0; i < length; ++i) {
+            char c = string.charAt(i);
+            if(Character.isSurrogate(c)) {
+                //A surrogate pair takes four bytes in all, two for each half
+                bytes += 1;
+            } else if(c >= 0x800) {
+                bytes += 2;
+            } else if(c >= 0x80) {
+                bytes += 1;
+            }
+        }
+        return bytes;
+    }
+    
+    private static Pattern compile(String patterns) {
+        if(patterns == null || patterns.trim().isEmpty())
+            return null;
+        
+        StringBuilder regex = new StringBuilder();
+        for(String pattern : patterns.split(",")) {
+            pattern = pattern.trim();
+            if(pattern.isEmpty())
+                continue;
+            if(regex.length() > 0)
+                regex.append('|');
+            
+            String[] literals = pattern.split("\\*", -1);
+            for(int i = 0; i < literals.length; ++i) {
+                if(i > 0)
+                    regex.append(".*");
+                if(! literals[i].isEmpty())
+                    regex.append(Pattern.quote(literals[i]));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+}
@@ -0,0 +1,146 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.amqp.core.MessageProperties;
+
+/**
+ * The headers of a consumed message, read straight through to its AMQP properties
+ * 
+ * Holds the same entries setBasicPropertiesToHeaders and copyHeaders would have put in a Camel header map,
+ * but without copying anything up front: single headers are looked up on demand. The first write, removal
+ * or iteration copies everything into a regular Camel header map, which serves all later calls.
+ */
+class SpringAMQPHeadersMap extends AbstractMap<String, Object> {
+    private static final Object ABSENT = new Object();
+    
+    private final MessageProperties properties;
+    private final Supplier<Map<String, Object>> headersFactory;
+    private Map<String, Object> headers;
+    private Map<String, Object> index;
+
+    SpringAMQPHeadersMap(MessageProperties properties, Supplier<Map<String, Object>> headersFactory) {
+        this.properties = properties;
+        this.headersFactory = headersFactory;
+    }
+    
+    @Override
+    public Object get(Object key) {
+        if(this.headers != null)
+            return this.headers.get(key);
+        if(! (key instanceof String))
+            return null;
+        
+        //AMQP headers take precedence, as copyHeaders ran after setBasicPropertiesToHeaders
+        String name = (String) key;
+        Object value = findHeader(name);
+        if(value != ABSENT)
+            return value;
+        
+        Function<MessageProperties, Object> reader = SpringAMQPHeader.PROPERTY_READERS.get(name);
+        return reader == null ? null : reader.apply(this.properties);
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        if(this.headers != null)
+            return this.headers.containsKey(key);
+        if(! (key instanceof String))
+            return false;
+        
+        String name = (String) key;
+        return SpringAMQPHeader.PROPERTY_READERS.containsKey(name) || findHeader(name) != ABSENT;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        //The basic properties are always present, if only as nulls
+        return this.headers != null ? this.headers.isEmpty() : false;
+    }
+    
+    @Override
+    public Object put(String key, Object value) {
+        return materialize().put(key, value);
+    }
+    
+    @Override
+    public Object remove(Object key) {
+        return materialize().remove(key);
+    }
+    
+    @Override
+    public void clear() {
+        if(this.headers == null)
+            this.headers = this.headersFactory.get();
+        else
+            this.headers.clear();
+    }
+    
+    @Override
+    public int size() {
+        return materialize().size();
+    }
+    
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return materialize().entrySet();
+    }
+    
+    /**
+     * @return True once the headers have been copied into a regular map
+     */
+    boolean isMaterialized() {
+        return this.headers != null;
+    }
+    
+    /**
+     * @return The value of the AMQP header, or ABSENT if there is none
+     */
+    private Object findHeader(String name) {
+        Map<String, Object> amqpHeaders = this.properties.getHeaders();
+        if(amqpHeaders.isEmpty())
+            return ABSENT;
+        
+        if(! SpringAMQPMessage.EXCHANGE_PATTERN.equals(name)) {
+            Object value = amqpHeaders.get(name);
+            if(value != null || amqpHeaders.containsKey(name))
+                return value;
+        }
+        
+        //Camel headers are case insensitive, so misses go to an index built on the first of them
+        if(this.index == null) {
+            Map<String, Object> index = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            copyHeaders(index);
+            this.index = index;
+        }
+        Object value = this.index.get(name);
+        return value != null || this.index.containsKey(name) ? value : ABSENT;
+    }
+    
+    private Map<String, Object> materialize() {
+        if(this.headers == null) {
+            Map<String, Object> copy = this.headersFactory.get();
+            for(Map.Entry<String, Function<MessageProperties, Object>> reader : SpringAMQPHeader.PROPERTY_READERS.entrySet())
+                copy.put(reader.getKey(), reader.getValue().apply(this.properties));
+            copyHeaders(copy);
+            this.headers = copy;
+            this.index = null;
+        }
+        return this.headers;
+    }
+    
+    //The AMQP headers as copyHeaders would copy them, without the exchange pattern it consumes
+    private void copyHeaders(Map<String, Object> target) {
+        for(Map.Entry<String, Object> header : this.properties.getHeaders().entrySet()) {
+            if(! SpringAMQPMessage.EXCHANGE_PATTERN.equals(header.getKey()))
+                target.put(header.getKey(), header.getValue());
+        }
+    }
+}
@@ -4,8 +4,11 @@
 
 package amqp.spring.camel.component;
 
+import java.nio.ByteBuffer;
+import java.util.Map;
 import org.apache.camel.CamelContext;
 import org.apache.camel.ExchangePattern;
+import org.apache.camel.spi.DataType;
 import org.apache.camel.support.DefaultMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +23,15 @@ public class SpringAMQPMessage extends DefaultMessage {
     
     public static final String EXCHANGE_PATTERN = "CamelExchangePattern";
     public static final String IS_EXCEPTION_CAUGHT = "IsCamelExceptionCaught";
+    public static final String BATCH_HEADERS = "AmqpBatchHeaders";
+    //Zero-length arrays can't be modified, so every empty message shares one
+    private static final byte[] EMPTY_BODY = new byte[0];
+    
+    //A delivered body that has not been converted yet; only set for lazy bodies
+    private org.springframework.amqp.core.Message pendingBody;
+    private MessageConverter pendingConverter;
+    //Properties of the delivered message, read through by the headers until they are first modified
+    private MessageProperties deliveredProperties;
         
     public SpringAMQPMessage(CamelContext context) {
         super(context);
@@ -31,6 +43,22 @@ public class SpringAMQPMessage extends DefaultMessage {
     }
 
     public static SpringAMQPMessage fromAMQPMessage(CamelContext context, MessageConverter msgConverter, org.springframework.amqp.core.Message amqpMessage) {
+        return fromAMQPMessage(context, msgConverter, amqpMessage, false);
+    }
+
+    /**
+     * @param rawBody If true the delivered byte[] becomes the body as-is, without consulting the converter.
+     * Camel's type converters will wrap it as a ByteBuffer without copying.
+     */
+    public static SpringAMQPMessage fromAMQPMessage(CamelContext context, MessageConverter msgConverter, org.springframework.amqp.core.Message amqpMessage, boolean rawBody) {
+        return fromAMQPMessage(context, msgConverter, amqpMessage, rawBody, false);
+    }
+
+    /**
+     * @param lazyBody If true the body is only converted the first time it is read. A body that is never read
+     * (or replaced) is published again from the delivered bytes by toAMQPMessage, without a decode/encode round trip.
+     */
+    public static SpringAMQPMessage fromAMQPMessage(CamelContext context, MessageConverter msgConverter, org.springframework.amqp.core.Message amqpMessage, boolean rawBody, boolean lazyBody) {
         if(amqpMessage == null) {
             LOG.debug("Received NULL AMQP Message, returning null");
             return null;
@@ -41,6 +69,11 @@ public class SpringAMQPMessage extends DefaultMessage {
         //Restore the body based on the message converter provided
         if(amqpMessage.getBody() == null || amqpMessage.getBody().length == 0) {
             message.setBody(null);
+        } else if(rawBody) {
+            message.setBody(amqpMessage.getBody());
+        } else if(lazyBody) {
+            message.pendingBody = amqpMessage;
+            message.pendingConverter = msgConverter;
         } else {
             if(LOG.isTraceEnabled()) {
                 String asText = new String(amqpMessage.getBody());
@@ -50,9 +83,8 @@ public class SpringAMQPMessage extends DefaultMessage {
             message.setBody(msgConverter.fromMessage(amqpMessage));
         }
 
-        //Set & restore headers from AMQP
-        message = SpringAMQPHeader.setBasicPropertiesToHeaders(message, amqpMessage);
-        message = SpringAMQPHeader.copyHeaders(message, amqpMessage.getMessageProperties().getHeaders());
+        //Restore headers from AMQP, on demand
+        message.deliveredProperties = amqpMessage.getMessageProperties();
         
         return message;
     }
@@ -68,29 +100,165 @@ public class SpringAMQPMessage extends DefaultMessage {
     }
 
     public Message toAMQPMessage(MessageConverter msgConverter) {
+        return toAMQPMessage(msgConverter, false);
+    }
+
+    /**
+     * @param rawBody If true, byte[] and ByteBuffer bodies are published as-is without consulting the converter.
+     * Other body types are still converted.
+     */
+    public Message toAMQPMessage(MessageConverter msgConverter, boolean rawBody) {
+        return toAMQPMessage(msgConverter, rawBody, null);
+    }
+
+    /**
+     * @param headerFilter Decides which custom headers are copied onto the AMQP message; null copies them all
+     */
+    public Message toAMQPMessage(MessageConverter msgConverter, boolean rawBody, SpringAMQPHeaderFilter headerFilter) {
+        return toAMQPMessage(this, msgConverter, rawBody, headerFilter);
+    }
+
+    /**
+     * Builds the AMQP message for any Camel message, reading its body and headers in place rather than
+     * copying it into a SpringAMQPMessage first. The message must belong to an exchange.
+     * 
+     * @param headerFilter Decides which custom headers are copied onto the AMQP message; null copies them all
+     */
+    public static Message toAMQPMessage(org.apache.camel.Message message, MessageConverter msgConverter, boolean rawBody, SpringAMQPHeaderFilter headerFilter) {
         MessageProperties properties = new MessageProperties();
-        properties.setMessageId(this.getMessageId());
+        properties.setMessageId(message.getMessageId());
+        
+        //Forward an untouched lazy body as it was delivered
+        Message pendingBody = message instanceof SpringAMQPMessage ? ((SpringAMQPMessage) message).pendingBody : null;
+        if(pendingBody != null) {
+            MessageProperties pendingProperties = pendingBody.getMessageProperties();
+            properties.setContentType(pendingProperties.getContentType());
+            properties.setContentEncoding(pendingProperties.getContentEncoding());
+            properties.setContentLength(pendingBody.getBody().length);
+            return new HeadersPostProcessor(message, headerFilter).postProcessMessage(new Message(pendingBody.getBody(), properties));
+        }
+        
+        Object body = message.getBody();
+        byte[] rawBytes = rawBody ? toRawBytes(body) : null;
         
         Message amqpMessage;
-        if(this.getBody() != null) {
-            amqpMessage = msgConverter.toMessage(this.getBody(), properties);
+        if(rawBytes != null) {
+            properties.setContentLength(rawBytes.length);
+            amqpMessage = new Message(rawBytes, properties);
+        } else if(body != null) {
+            amqpMessage = msgConverter.toMessage(body, properties);
             
             if(LOG.isTraceEnabled()) {
                 String asText = new String(amqpMessage.getBody());
                 LOG.trace("Translating to AMQP message: "+asText+", "+amqpMessage.getMessageProperties());
             }
         } else {
-            amqpMessage = new Message(new byte[]{}, properties);
+            amqpMessage = new Message(EMPTY_BODY, properties);
         }
         
-        return new HeadersPostProcessor(this).postProcessMessage(amqpMessage);
+        return new HeadersPostProcessor(message, headerFilter).postProcessMessage(amqpMessage);
+    }
+    
+    /**
+     * @return True if the body was delivered but has not been converted yet
+     */
+    public boolean isBodyPending() {
+        return this.pendingBody != null;
+    }
+
+    @Override
+    protected Object createBody() {
+        if(this.pendingBody == null)
+            return super.createBody();
+        
+        org.springframework.amqp.core.Message amqpMessage = this.pendingBody;
+        MessageConverter msgConverter = this.pendingConverter;
+        //The converted body may be modified, so the delivered bytes can no longer be forwarded
+        clearPendingBody();
+        
+        if(LOG.isTraceEnabled()) {
+            String asText = new String(amqpMessage.getBody());
+            LOG.trace("Translating from AMQP message: "+asText+", "+amqpMessage.getMessageProperties());
+        }
+        return msgConverter.fromMessage(amqpMessage);
+    }
+
+    @Override
+    protected Map<String, Object> createHeaders() {
+        if(this.deliveredProperties == null)
+            return super.createHeaders();
+        return new SpringAMQPHeadersMap(this.deliveredProperties, super::createHeaders);
+    }
+
+    @Override
+    public void setBody(Object body) {
+        clearPendingBody();
+        super.setBody(body);
+    }
+
+    @Override
+    public void setBody(Object body, DataType type) {
+        clearPendingBody();
+        super.setBody(body, type);
+    }
+
+    @Override
+    public void copyFrom(org.apache.camel.Message that) {
+        if(that == this)
+            return;
+        
+        //Copy a pending body along without converting it
+        if(that instanceof SpringAMQPMessage && ((SpringAMQPMessage) that).isBodyPending()) {
+            SpringAMQPMessage source = (SpringAMQPMessage) that;
+            copyFromWithNewBody(that, null);
+            this.pendingBody = source.pendingBody;
+            this.pendingConverter = source.pendingConverter;
+        } else {
+            super.copyFrom(that);
+        }
+    }
+
+    @Override
+    public SpringAMQPMessage newInstance() {
+        return new SpringAMQPMessage(getCamelContext());
+    }
+    
+    private void clearPendingBody() {
+        this.pendingBody = null;
+        this.pendingConverter = null;
+    }
+    
+    /**
+     * @return The body as a byte array, sharing the backing array whenever a ByteBuffer covers all of it,
+     * or null if the body is not binary
+     */
+    protected static byte[] toRawBytes(Object body) {
+        if(body instanceof byte[])
+            return (byte[]) body;
+        if(! (body instanceof ByteBuffer))
+            return null;
+        
+        ByteBuffer buffer = (ByteBuffer) body;
+        if(buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length)
+            return buffer.array();
+        
+        //Read-only, direct or sliced buffers can't expose their array
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
     }
     
     public static class HeadersPostProcessor implements MessagePostProcessor {
         public org.apache.camel.Message camelMessage;
+        public SpringAMQPHeaderFilter headerFilter;
         
         public HeadersPostProcessor(org.apache.camel.Message camelMessage) {
+            this(camelMessage, null);
+        }
+        
+        public HeadersPostProcessor(org.apache.camel.Message camelMessage, SpringAMQPHeaderFilter headerFilter) {
             this.camelMessage = camelMessage;
+            this.headerFilter = headerFilter;
         }
         
         @Override
@@ -99,8 +267,7 @@ public class SpringAMQPMessage extends DefaultMessage {
                 return msg;
                         
             //Set headers
-            msg = SpringAMQPHeader.setBasicPropertiesFromHeaders(msg, camelMessage.getHeaders());
-            msg = SpringAMQPHeader.copyHeaders(msg, camelMessage.getHeaders());
+            msg = SpringAMQPHeader.mapHeaders(msg, camelMessage.getHeaders(), headerFilter, camelMessage.getExchange());
             
             //Set the exchange pattern so we can re-set it upon receipt
             if(camelMessage.getExchange() != null) {
@@ -4,8 +4,14 @@
 
 package amqp.spring.camel.component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.camel.AsyncCallback;
 import org.apache.camel.Exchange;
 import org.apache.camel.support.DefaultAsyncProducer;
@@ -14,6 +20,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.amqp.AmqpConnectException;
 import org.springframework.amqp.AmqpIOException;
 import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.AsyncRabbitTemplate;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.AmqpNackReceivedException;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.amqp.support.converter.SimpleMessageConverter;
@@ -22,7 +31,14 @@ public class SpringAMQPProducer extends DefaultAsyncProducer {
     private static transient final Logger LOG = LoggerFactory.getLogger(SpringAMQPProducer.class);
     
     private final SpringAMQPEndpoint endpoint;
-    private ExecutorService threadPool;
+    private volatile ExecutorService threadPool;
+    private AsyncRabbitTemplate asyncTemplate;
+    private volatile PublishTemplate publishTemplate;
+    
+    private final Object batchLock = new Object();
+    private List<PendingPublish> pendingBatch = new ArrayList<>();
+    private ScheduledExecutorService batchTimer; //Guarded by batchLock, null once batching has stopped
+    private ScheduledFuture<?> batchTimeout;
     
     public SpringAMQPProducer(SpringAMQPEndpoint endpoint) {
         super(endpoint);
@@ -50,10 +66,152 @@ public class SpringAMQPProducer extends DefaultAsyncProducer {
             return true;
         }
         
+        if(this.asyncTemplate != null && exchange.getPattern().isOutCapable())
+            return sendAndReceiveAsync(exchange, callback);
+        
+        if(this.endpoint.getBatchSize() > 1 && ! exchange.getPattern().isOutCapable())
+            return sendBatched(exchange, callback);
+        
         this.threadPool.submit(new AMQPProducerTask(exchange, callback));
         return false;
     }
     
+    /**
+     * Queue an InOnly publish onto the current batch. A batch is published on a single channel
+     * once it reaches batchSize, or once batchTimeout has elapsed since its first publish.
+     */
+    protected boolean sendBatched(Exchange exchange, AsyncCallback callback) {
+        //Read straight from the inbound message; replies replace it anyway
+        org.apache.camel.Message message = exchange.getIn();
+        
+        PublishTemplate template = getPublishTemplate();
+        PendingPublish publish;
+        try {
+            Message amqpMessage = template.toAMQPMessage(message);
+            publish = new PendingPublish(exchange, callback, resolveExchangeName(message), resolveRoutingKey(message), amqpMessage);
+        } catch (Throwable t) {
+            LOG.error("Could not convert message for AMQP", t);
+            exchange.setException(t);
+            callback.done(true);
+            return true;
+        }
+        
+        List<PendingPublish> fullBatch = null;
+        synchronized(this.batchLock) {
+            //The producer is stopping, publish this one on its own instead
+            if(this.batchTimer == null) {
+                fullBatch = new ArrayList<>(1);
+                fullBatch.add(publish);
+            } else {
+                this.pendingBatch.add(publish);
+                if(this.pendingBatch.size() >= this.endpoint.getBatchSize())
+                    fullBatch = takeBatch();
+                else if(this.batchTimeout == null)
+                    this.batchTimeout = this.batchTimer.schedule(this::flushBatch, this.endpoint.getBatchTimeout(), TimeUnit.MILLISECONDS);
+            }
+        }
+        
+        if(fullBatch != null)
+            submitBatch(fullBatch);
+        return false;
+    }
+    
+    //Publish on the pool, or on the calling thread if the pool has gone away
+    private void submitBatch(List<PendingPublish> batch) {
+        AMQPBatchTask task = new AMQPBatchTask(batch);
+        ExecutorService pool = this.threadPool;
+        try {
+            if(pool != null) {
+                pool.submit(task);
+                return;
+            }
+        } catch(RejectedExecutionException e) {
+            LOG.debug("Producer pool is shut down, publishing batch on the calling thread");
+        }
+        task.run();
+    }
+    
+    /**
+     * Publish whatever is currently batched on the calling thread
+     */
+    protected void flushBatch() {
+        List<PendingPublish> batch;
+        synchronized(this.batchLock) {
+            batch = takeBatch();
+        }
+        
+        if(! batch.isEmpty())
+            new AMQPBatchTask(batch).run();
+    }
+    
+    /**
+     * Stop batching and publish whatever is still pending on the calling thread. Publishes
+     * arriving from here on are sent on their own.
+     */
+    private void stopBatching() {
+        ScheduledExecutorService timer;
+        List<PendingPublish> batch;
+        synchronized(this.batchLock) {
+            timer = this.batchTimer;
+            this.batchTimer = null;
+            batch = takeBatch();
+        }
+        
+        if(timer != null)
+            timer.shutdown();
+        if(! batch.isEmpty())
+            new AMQPBatchTask(batch).run();
+    }
+    
+    //Callers must hold the batch lock
+    private List<PendingPublish> takeBatch() {
+        List<PendingPublish> batch = this.pendingBatch;
+        this.pendingBatch = new ArrayList<>(Math.max(this.endpoint.getBatchSize(), 1));
+        if(this.batchTimeout != null) {
+            this.batchTimeout.cancel(false);
+            this.batchTimeout = null;
+        }
+        return batch;
+    }
+    
+    /**
+     * Publish a request and complete the exchange from the reply listener thread,
+     * so an in-flight request/reply costs a pending correlation rather than a parked pool thread.
+     */
+    protected boolean sendAndReceiveAsync(final Exchange exchange, final AsyncCallback callback) {
+        //Read straight from the inbound message; replies replace it anyway
+        org.apache.camel.Message message = exchange.getIn();
+        
+        PublishTemplate template = getPublishTemplate();
+        final MessageConverter msgConverter = template.getMessageConverter();
+        String routingKey = resolveRoutingKey(message);
+        String exchangeName = resolveExchangeName(message);
+        
+        try {
+            LOG.debug("Asynchronous send and request for exchange {}", exchange.getExchangeId());
+            this.asyncTemplate.sendAndReceive(exchangeName, routingKey, template.toAMQPMessage(message)).addCallback(amqpResponse -> {
+                try {
+                    handleResponse(exchange, amqpResponse, msgConverter);
+                } catch (Throwable t) {
+                    LOG.error("Could not handle AMQP response", t);
+                    exchange.setException(t);
+                }
+                callback.done(false);
+            }, t -> {
+                LOG.error("Could not receive response via AMQP", t);
+                exchange.setException(t);
+                callback.done(false);
+            });
+        } catch (Throwable t) {
+            LOG.error("Could not deliver message via AMQP", t);
+            exchange.setException(t);
+            callback.done(true);
+            return true;
+        }
+        
+        return false;
+    }
+    
     @Override
     public void process(Exchange exchange) throws Exception {
         if(!isRunAllowed() && exchange.getException() == null) {
@@ -68,6 +226,21 @@ public class SpringAMQPProducer extends DefaultAsyncProducer {
     public void doStart() throws Exception {
         super.doStart();
         
+        if (this.endpoint.isPublisherConfirms()) {
+            if (!(this.endpoint.getAmqpTemplate() instanceof RabbitTemplate))
+                throw new IllegalStateException("Publisher confirms require a RabbitTemplate for endpoint "+this.endpoint);
+            
+            RabbitTemplate rabbitTemplate = (RabbitTemplate) this.endpoint.getAmqpTemplate();
+            if (!rabbitTemplate.getConnectionFactory().isPublisherConfirms())
+                throw new IllegalStateException("Publisher confirms require a connection factory with correlated publisher confirms enabled for endpoint "+this.endpoint);
+        }
+        
+        if (this.endpoint.getBatchSize() > 1 && !(this.endpoint.getAmqpTemplate() instanceof RabbitTemplate))
+            throw new IllegalStateException("Batched publishing requires a RabbitTemplate for endpoint "+this.endpoint);
+        
+        //Resolve everything that doesn't change between publishes up front
+        this.publishTemplate = new PublishTemplate(this.endpoint, getMessageConverter());
+        
         if (this.endpoint.isCreateResources()) {
             org.springframework.amqp.core.Exchange exchange = this.endpoint.createAMQPExchange();
             if (this.endpoint.isUsingDefaultExchange()) {
@@ -91,27 +264,129 @@ public class SpringAMQPProducer extends DefaultAsyncProducer {
         }
 
         //Initialize execution pool
-        this.threadPool = this.endpoint.getCamelContext().getExecutorServiceManager().newDefaultThreadPool(this, "amqp-producer");
+        if (this.endpoint.isUseVirtualThreads()) {
+            this.threadPool = VirtualThreads.newThreadPerTaskExecutor("amqp-producer-");
+            if (this.threadPool == null)
+                LOG.warn("Virtual threads are not supported on Java {}, using a thread pool for endpoint {}", System.getProperty("java.version"), this.endpoint);
+        }
+        if (this.threadPool == null)
+            this.threadPool = this.endpoint.getCamelContext().getExecutorServiceManager().newDefaultThreadPool(this, "amqp-producer");
+        
+        //Initialize the direct reply-to listener for non-blocking request/reply
+        if (this.endpoint.isAsyncRequestReply()) {
+            if (!(this.endpoint.getAmqpTemplate() instanceof RabbitTemplate))
+                throw new IllegalStateException("Asynchronous request/reply requires a RabbitTemplate for endpoint "+this.endpoint);
+            
+            this.asyncTemplate = new AsyncRabbitTemplate((RabbitTemplate) this.endpoint.getAmqpTemplate());
+            this.asyncTemplate.setReceiveTimeout(this.endpoint.getReplyTimeout());
+            this.asyncTemplate.start();
+        }
+        
+        //Initialize the timer that flushes partially filled batches
+        if (this.endpoint.getBatchSize() > 1) {
+            ScheduledExecutorService timer = this.endpoint.getCamelContext().getExecutorServiceManager().newSingleThreadScheduledExecutor(this, "amqp-producer-batch");
+            synchronized(this.batchLock) {
+                this.batchTimer = timer;
+            }
+        }
     }
 
     @Override
     public void doShutdown() throws Exception {
         super.doShutdown();
         
+        stopBatching();
+        
         if(this.threadPool != null) {
             this.threadPool.shutdown();
             this.threadPool = null;
         }
+        
+        if(this.asyncTemplate != null) {
+            this.asyncTemplate.stop();
+            this.asyncTemplate = null;
+        }
     }
     
     @Override
     public void doStop() throws Exception {
         super.doStop();
         
+        //Endpoint options may change before the next start
+        this.publishTemplate = null;
+        
+        stopBatching();
+        
         if(this.threadPool != null) {
             this.threadPool.shutdown();
             this.threadPool = null;
         }
+        
+        if(this.asyncTemplate != null) {
+            this.asyncTemplate.stop();
+            this.asyncTemplate = null;
+        }
+    }
+    
+    //We have to ask the RabbitMQ Template for converters, the interface doesn't have a way to get MessageConverter
+    protected MessageConverter getMessageConverter() {
+        if(endpoint.getAmqpTemplate() instanceof RabbitTemplate) {
+            RabbitTemplate rabbitTemplate = (RabbitTemplate) endpoint.getAmqpTemplate();
+            return rabbitTemplate.getMessageConverter();
+        } else {
+            LOG.warn("Cannot find RabbitMQ AMQP Template, falling back to simple message converter");
+            return new SimpleMessageConverter();
+        }
+    }
+    
+    protected String resolveRoutingKey(org.apache.camel.Message message) {
+        return getPublishTemplate().resolveRoutingKey(message);
+    }
+    
+    protected String resolveExchangeName(org.apache.camel.Message message) {
+        return getPublishTemplate().resolveExchangeName(message);
+    }
+    
+    //Synchronous process() calls may arrive before the producer has started
+    private PublishTemplate getPublishTemplate() {
+        PublishTemplate template = this.publishTemplate;
+        if(template == null)
+            template = new PublishTemplate(this.endpoint, getMessageConverter());
+        return template;
+    }
+    
+    /**
+     * Complete the exchange once the broker acks or nacks the publish
+     */
+    protected void completeOnConfirm(final Exchange exchange, final AsyncCallback callback, CorrelationData correlationData, final Message amqpMessage) {
+        correlationData.getFuture().addCallback(confirm -> {
+            if(confirm != null && ! confirm.isAck()) {
+                LOG.warn("Broker rejected message for exchange {}: {}", exchange.getExchangeId(), confirm.getReason());
+                exchange.setException(new AmqpNackReceivedException("Broker rejected message: "+confirm.getReason(), amqpMessage));
+            }
+            callback.done(false);
+        }, t -> {
+            LOG.error("Could not confirm delivery of message via AMQP", t);
+            exchange.setException(t);
+            callback.done(false);
+        });
+    }
+    
+    protected void handleResponse(Exchange exchange, Message amqpResponse, MessageConverter msgConverter) {
+        SpringAMQPMessage camelResponse = SpringAMQPMessage.fromAMQPMessage(endpoint.getCamelContext(), msgConverter, amqpResponse, endpoint.isRawBody(), endpoint.isLazyBody());
+
+        if (camelResponse != null && (Boolean)camelResponse.getHeader(SpringAMQPMessage.IS_EXCEPTION_CAUGHT, Boolean.FALSE)) {
+            Object caughtObject = camelResponse.getBody();
+            if (caughtObject == null) {
+                exchange.setException(new RuntimeException("Null exception caught from Camel."));
+            } else if (caughtObject instanceof Throwable) {
+                exchange.setException((Throwable)caughtObject);
+            } else {
+                exchange.setException(new RuntimeException(caughtObject.toString()));
+            }
+        } else {
+            exchange.setMessage(camelResponse);
+        }
     }
     
     private class AMQPProducerTask implements Runnable {
@@ -129,53 +404,113 @@ public class SpringAMQPProducer extends DefaultAsyncProducer {
         
         @Override
         public void run() {
+            //Read straight from the inbound message; replies replace it anyway
             org.apache.camel.Message message = exchange.getIn();
-            SpringAMQPMessage inMessage = new SpringAMQPMessage(message);
-            exchange.setIn(inMessage); //Swap out the old message format
 
-            MessageConverter msgConverter;
-            if(endpoint.getAmqpTemplate() instanceof RabbitTemplate) {
-                RabbitTemplate rabbitTemplate = (RabbitTemplate) endpoint.getAmqpTemplate();
-                msgConverter = rabbitTemplate.getMessageConverter();
-            } else {
-                LOG.warn("Cannot find RabbitMQ AMQP Template, falling back to simple message converter");
-                msgConverter = new SimpleMessageConverter();
-            }
-            
-            String routingKeyHeader = message.getHeader(SpringAMQPComponent.ROUTING_KEY_HEADER, String.class);
-            String routingKey = routingKeyHeader != null ? routingKeyHeader : endpoint.getRoutingKey();
-            
-            String exchangeNameHeader = message.getHeader(SpringAMQPComponent.EXCHANGE_NAME_HEADER, String.class);
-            String exchangeName = exchangeNameHeader != null ? exchangeNameHeader : endpoint.getExchangeName();
+            PublishTemplate template = getPublishTemplate();
+            MessageConverter msgConverter = template.getMessageConverter();
+            String routingKey = resolveRoutingKey(message);
+            String exchangeName = resolveExchangeName(message);
 
             try {
                 if(exchange.getPattern().isOutCapable()) {
                     LOG.debug("Synchronous send and request for exchange {}", exchange.getExchangeId());
-                    Message amqpResponse = endpoint.getAmqpTemplate().sendAndReceive(exchangeName, routingKey, inMessage.toAMQPMessage(msgConverter));
-                    SpringAMQPMessage camelResponse = SpringAMQPMessage.fromAMQPMessage(endpoint.getCamelContext(), msgConverter, amqpResponse);
-
-                    if (camelResponse != null && (Boolean)camelResponse.getHeader(SpringAMQPMessage.IS_EXCEPTION_CAUGHT, Boolean.FALSE)) {
-                        Object caughtObject = camelResponse.getBody();
-                        if (caughtObject == null) {
-                            exchange.setException(new RuntimeException("Null exception caught from Camel."));
-                        } else if (caughtObject instanceof Throwable) {
-                            exchange.setException((Throwable)caughtObject);
-                        } else {
-                            exchange.setException(new RuntimeException(caughtObject.toString()));
-                        }
-                    } else {
-                        exchange.setMessage(camelResponse);
+                    Message amqpResponse = endpoint.getAmqpTemplate().sendAndReceive(exchangeName, routingKey, template.toAMQPMessage(message));
+                    handleResponse(exchange, amqpResponse, msgConverter);
+                } else if(endpoint.isPublisherConfirms()) {
+                    LOG.debug("Confirmed send for exchange {}", exchange.getExchangeId());
+                    Message amqpMessage = template.toAMQPMessage(message);
+                    CorrelationData correlationData = new CorrelationData(exchange.getExchangeId());
+                    ((RabbitTemplate) endpoint.getAmqpTemplate()).send(exchangeName, routingKey, amqpMessage, correlationData);
+                    
+                    //The callback is completed once the broker acks or nacks the publish, not before
+                    if(callback != null) {
+                        completeOnConfirm(exchange, callback, correlationData, amqpMessage);
+                        return;
                     }
+                    
+                    CorrelationData.Confirm confirm = correlationData.getFuture().get(endpoint.getConfirmTimeout(), TimeUnit.MILLISECONDS);
+                    if(! confirm.isAck())
+                        exchange.setException(new AmqpNackReceivedException("Broker rejected message: "+confirm.getReason(), amqpMessage));
                 } else {
                     LOG.debug("Synchronous send for exchange {}", exchange.getExchangeId());
-                    endpoint.getAmqpTemplate().send(exchangeName, routingKey, inMessage.toAMQPMessage(msgConverter));
+                    endpoint.getAmqpTemplate().send(exchangeName, routingKey, template.toAMQPMessage(message));
                 }
+            } catch (TimeoutException t) {
+                LOG.error("Timed out waiting for a publisher confirm", t);
+                exchange.setException(t);
+            } catch (InterruptedException t) {
+                //Keep the interrupt for whoever owns this thread
+                Thread.currentThread().interrupt();
+                LOG.error("Interrupted waiting for a publisher confirm", t);
+                exchange.setException(t);
             } catch (Throwable t) {
                 LOG.error("Could not deliver message via AMQP", t);
+                exchange.setException(t);
             }
             
             if(callback != null) 
                 callback.done(false);
         }
     }
+    
+    private static class PendingPublish {
+        private final Exchange exchange;
+        private final AsyncCallback callback;
+        private final String exchangeName;
+        private final String routingKey;
+        private final Message amqpMessage;
+        private boolean sent = false;
+        
+        PendingPublish(Exchange exchange, AsyncCallback callback, String exchangeName, String routingKey, Message amqpMessage) {
+            this.exchange = exchange;
+            this.callback = callback;
+            this.exchangeName = exchangeName;
+            this.routingKey = routingKey;
+            this.amqpMessage = amqpMessage;
+        }
+    }
+    
+    private class AMQPBatchTask implements Runnable {
+        private final List<PendingPublish> batch;
+        
+        public AMQPBatchTask(List<PendingPublish> batch) {
+            this.batch = batch;
+        }
+        
+        @Override
+        public void run() {
+            LOG.debug("Batched send of {} messages", batch.size());
+            RabbitTemplate rabbitTemplate = (RabbitTemplate) endpoint.getAmqpTemplate();
+            
+            try {
+                //Publish the whole batch on one dedicated channel
+                rabbitTemplate.invoke(operations -> {
+                    for(PendingPublish publish : batch) {
+                        if(endpoint.isPublisherConfirms()) {
+                            CorrelationData correlationData = new CorrelationData(publish.exchange.getExchangeId());
+                            operations.send(publish.exchangeName, publish.routingKey, publish.amqpMessage, correlationData);
+                            completeOnConfirm(publish.exchange, publish.callback, correlationData, publish.amqpMessage);
+                        } else {
+                            operations.send(publish.exchangeName, publish.routingKey, publish.amqpMessage);
+                        }
+                        publish.sent = true;
+                    }
+                    return null;
+                });
+            } catch (Throwable t) {
+                LOG.error("Could not deliver batched messages via AMQP", t);
+                for(PendingPublish publish : batch) {
+                    if(! publish.sent)
+                        publish.exchange.setException(t);
+                }
+            }
+            
+            for(PendingPublish publish : batch) {
+                //Confirmed publishes are completed by their confirm instead
+                if(! publish.sent || ! endpoint.isPublisherConfirms())
+                    publish.callback.done(false);
+            }
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package amqp.spring.camel.component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access to JDK 21+ virtual threads while still compiling for older releases.
+ * The virtual thread API is looked up reflectively once; on older JVMs every
+ * factory method returns null so callers can fall back to platform threads.
+ */
+final class VirtualThreads {
+    private static transient final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+    
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+    
+    static {
+        Method ofVirtual = null, builderName = null, builderFactory = null, newThreadPerTaskExecutor = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            LOG.debug("Virtual threads are not available on Java {}", System.getProperty("java.version"));
+            ofVirtual = null;
+        }
+        
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+    
+    private VirtualThreads() { }
+    
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+    
+    /**
+     * @param namePrefix Prefix for the names of created threads, which are suffixed with a counter
+     * @return A factory creating virtual threads, or null if this JVM does not support them
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        if(! isSupported())
+            return null;
+        
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = BUILDER_NAME.invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Could not create a virtual thread factory, falling back to platform threads", e);
+            return null;
+        }
+    }
+    
+    /**
+     * @param namePrefix Prefix for the names of created threads, which are suffixed with a counter
+     * @return An executor starting a new virtual thread per task, or null if this JVM does not support them
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory threadFactory = newThreadFactory(namePrefix);
+        if(threadFactory == null)
+            return null;
+        
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Could not create a virtual thread executor, falling back to platform threads", e);
+            return null;
+        }
+    }
+}
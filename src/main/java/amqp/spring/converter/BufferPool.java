@@ -0,0 +1,140 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of byte arrays in power-of-two size classes, which converters can share for their scratch buffers
+ * 
+ * Without a pool each converter keeps a buffer per thread and grows it by copying into ever larger arrays,
+ * which for multi-megabyte bodies means repeated humongous allocations. With one, buffers are taken from
+ * and returned to the pool as a whole, up to maxPooledBytes across all size classes. Requests larger than
+ * maxBufferSize are allocated (and later dropped) as usual. Only buffers acquired from the pool may be
+ * released to it, and each only once, so a buffer is never handed to two users at the same time.
+ */
+public class BufferPool {
+    public static final int DEFAULT_MIN_BUFFER_SIZE = 1024;
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 16 * 1024 * 1024;
+    public static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+    
+    private final int minShift;
+    private final int maxBufferSize;
+    private final long maxPooledBytes;
+    private final Deque<byte[]>[] sizeClasses;
+    //Buffers handed out and not yet released; byte arrays hash by identity
+    private final Set<byte[]> lent = ConcurrentHashMap.newKeySet();
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong outstandingBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public BufferPool() {
+        this(DEFAULT_MIN_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE, DEFAULT_MAX_POOLED_BYTES);
+    }
+
+    /**
+     * @param minBufferSize Smallest size class, rounded up to a power of two
+     * @param maxBufferSize Largest size class, rounded up to a power of two
+     * @param maxPooledBytes Upper bound on the bytes held by idle buffers
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(int minBufferSize, int maxBufferSize, long maxPooledBytes) {
+        if(minBufferSize <= 0 || maxBufferSize < minBufferSize || maxBufferSize > 1 << 30)
+            throw new IllegalArgumentException("Invalid buffer sizes "+minBufferSize+" to "+maxBufferSize);
+        
+        this.minShift = shiftFor(minBufferSize);
+        int maxShift = shiftFor(maxBufferSize);
+        this.maxBufferSize = 1 << maxShift;
+        this.maxPooledBytes = maxPooledBytes;
+        this.sizeClasses = new Deque[maxShift - this.minShift + 1];
+        for(int i = 0; i < this.sizeClasses.length; ++i)
+            this.sizeClasses[i] = new ConcurrentLinkedDeque<>();
+    }
+    
+    /**
+     * @return A buffer of at least the given size, which should be handed back to release() once done with
+     */
+    public byte[] acquire(int size) {
+        byte[] buffer = null;
+        if(size <= this.maxBufferSize) {
+            int shift = Math.max(this.minShift, shiftFor(size));
+            buffer = this.sizeClasses[shift - this.minShift].pollFirst();
+            if(buffer != null) {
+                this.pooledBytes.addAndGet(-buffer.length);
+                this.hits.increment();
+            } else {
+                buffer = new byte[1 << shift];
+                this.misses.increment();
+            }
+        } else {
+            buffer = new byte[size];
+            this.misses.increment();
+        }
+        
+        this.lent.add(buffer);
+        this.outstandingBytes.addAndGet(buffer.length);
+        return buffer;
+    }
+    
+    /**
+     * Hands back a buffer from acquire(); buffers outside the size classes are left to the garbage collector
+     * @throws IllegalArgumentException If the buffer wasn't acquired from this pool, or was already released
+     */
+    public void release(byte[] buffer) {
+        if(! this.lent.remove(buffer))
+            throw new IllegalArgumentException("Buffer of "+buffer.length+" bytes was not acquired from this pool, or was already released");
+        
+        int length = buffer.length;
+        this.outstandingBytes.addAndGet(-length);
+        if(length > this.maxBufferSize || Integer.bitCount(length) != 1 || length < 1 << this.minShift)
+            return;
+        
+        if(this.pooledBytes.addAndGet(length) > this.maxPooledBytes) {
+            this.pooledBytes.addAndGet(-length);
+            return;
+        }
+        this.sizeClasses[shiftFor(length) - this.minShift].offerFirst(buffer);
+    }
+    
+    public long getHits() {
+        return this.hits.sum();
+    }
+    
+    public long getMisses() {
+        return this.misses.sum();
+    }
+    
+    /**
+     * @return Fraction of acquisitions served from the pool
+     */
+    public double getHitRate() {
+        long hitCount = this.hits.sum();
+        long total = hitCount + this.misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+    
+    /**
+     * @return Bytes in buffers that have been acquired and not yet released
+     */
+    public long getOutstandingBytes() {
+        return this.outstandingBytes.get();
+    }
+    
+    /**
+     * @return Bytes in idle buffers held by the pool
+     */
+    public long getPooledBytes() {
+        return this.pooledBytes.get();
+    }
+    
+    private static int shiftFor(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+}
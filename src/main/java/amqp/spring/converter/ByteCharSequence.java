@@ -0,0 +1,81 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read-only CharSequence view over single-byte (ISO-8859-1 or ASCII) text, where each byte is one char.
+ * The bytes are shared, not copied; toString() materializes a String only when one is asked for.
+ */
+public class ByteCharSequence implements CharSequence {
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private String string;
+
+    public ByteCharSequence(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public ByteCharSequence(byte[] bytes, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > bytes.length)
+            throw new IndexOutOfBoundsException("Invalid range ["+offset+", "+(offset + length)+") of "+bytes.length+" bytes");
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if(index < 0 || index >= this.length)
+            throw new IndexOutOfBoundsException("Index "+index+" out of "+this.length);
+        return (char) (this.bytes[this.offset + index] & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if(start < 0 || end > this.length || start > end)
+            throw new IndexOutOfBoundsException("Invalid range ["+start+", "+end+") of "+this.length);
+        return new ByteCharSequence(this.bytes, this.offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        if(this.string == null)
+            this.string = new String(this.bytes, this.offset, this.length, StandardCharsets.ISO_8859_1);
+        return this.string;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(this == obj)
+            return true;
+        if(! (obj instanceof ByteCharSequence))
+            return false;
+        
+        ByteCharSequence other = (ByteCharSequence) obj;
+        if(this.length != other.length)
+            return false;
+        for(int i = 0; i < this.length; ++i) {
+            if(this.bytes[this.offset + i] != other.bytes[other.offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        //Matches String.hashCode() for the same characters
+        int hash = 0;
+        for(int i = 0; i < this.length; ++i)
+            hash = 31 * hash + (this.bytes[this.offset + i] & 0xff);
+        return hash;
+    }
+}
@@ -0,0 +1,32 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+/**
+ * Marshal (and un-marshal) a message into CBOR (RFC 8949), a compact binary encoding of the JSON data model
+ * 
+ * Messages are written with a content type of application/cbor, so this converter can be registered
+ * alongside a JSON converter within ContentTypeConverterFactory and queues migrated one at a time.
+ * Type headers and allowedTypes behave exactly as they do for JacksonConverter.
+ */
+public class CBORConverter extends JacksonConverter {
+    public static final String CONTENT_TYPE_CBOR = "application/cbor";
+
+    public CBORConverter() {
+        super();
+        this.objectMapper = new CBORMapper();
+    }
+
+    @Override
+    protected String getContentType() {
+        return CONTENT_TYPE_CBOR;
+    }
+
+    @Override
+    protected String getContentEncoding() {
+        return null;
+    }
+}
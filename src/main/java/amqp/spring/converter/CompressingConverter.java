@@ -0,0 +1,285 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.MessagePropertiesBuilder;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+/**
+ * Wraps another converter, deflating bodies at or above a size threshold
+ * 
+ * Compressed messages carry a content encoding of "deflate" or "deflate:&lt;original encoding&gt;", the
+ * same convention (and zlib format) used by Spring AMQP's DeflaterPostProcessor, so either side may be
+ * a plain Spring AMQP client. Messages without that encoding are passed through untouched, which lets
+ * consumers be switched over before producers. Counters for bytes saved and CPU time spent are kept
+ * for the life of the converter.
+ * 
+ * Inflated bodies are limited to maxInflatedSize bytes, so a small hostile body cannot expand without
+ * bound. Deflaters and inflaters hold native zlib memory, so at most one per processor is kept for
+ * reuse and any beyond that are ended as soon as they are returned.
+ */
+public class CompressingConverter implements MessageConverter {
+    private static transient final Logger LOG = LoggerFactory.getLogger(CompressingConverter.class);
+    public static final String ENCODING_DEFLATE = "deflate";
+    public static final int DEFAULT_THRESHOLD = 1024;
+    public static final int DEFAULT_MAX_INFLATED_SIZE = 64 * 1024 * 1024;
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+    private static final int CHUNK_SIZE = 8192;
+    
+    protected MessageConverter delegate;
+    protected int threshold = DEFAULT_THRESHOLD;
+    protected int level = Deflater.BEST_SPEED;
+    protected int maxInflatedSize = DEFAULT_MAX_INFLATED_SIZE;
+    
+    private final OutputBuffers outputBuffers = new OutputBuffers();
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final ThreadLocal<byte[]> chunks = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+    private final LongAdder compressedMessages = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+    private final LongAdder decompressedMessages = new LongAdder();
+    private final LongAdder decompressionNanos = new LongAdder();
+
+    public CompressingConverter() {
+    }
+
+    public CompressingConverter(MessageConverter delegate) {
+        this.delegate = delegate;
+    }
+
+    public MessageConverter getDelegate() {
+        return delegate;
+    }
+
+    public void setDelegate(MessageConverter delegate) {
+        this.delegate = delegate;
+    }
+
+    public BufferPool getBufferPool() {
+        return this.outputBuffers.getPool();
+    }
+
+    /**
+     * @param bufferPool Pool to draw scratch buffers from, instead of keeping one per thread
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.outputBuffers.setPool(bufferPool);
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param threshold Bodies of at least this many bytes are compressed
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @param level The deflate level, from 1 (fastest, the default) to 9 (smallest)
+     */
+    public void setLevel(int level) {
+        if(level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Invalid deflate level "+level);
+        this.level = level;
+    }
+
+    public int getMaxInflatedSize() {
+        return maxInflatedSize;
+    }
+
+    /**
+     * @param maxInflatedSize Compressed bodies that would inflate past this many bytes are rejected
+     */
+    public void setMaxInflatedSize(int maxInflatedSize) {
+        if(maxInflatedSize <= 0)
+            throw new IllegalArgumentException("Invalid maximum inflated size "+maxInflatedSize);
+        this.maxInflatedSize = maxInflatedSize;
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        Message message = this.delegate.toMessage(object, messageProperties);
+        byte[] body = message.getBody();
+        if(body == null || body.length < this.threshold)
+            return message;
+        
+        long started = cpuTime();
+        byte[] compressed = deflate(body);
+        long elapsed = cpuTime() - started;
+        this.compressionNanos.add(elapsed);
+        
+        //Not worth it, leave the message as it is
+        if(compressed.length >= body.length) {
+            LOG.trace("Skipped compression [bytes={}, compressed={}]", body.length, compressed.length);
+            return message;
+        }
+        
+        this.compressedMessages.increment();
+        this.uncompressedBytes.add(body.length);
+        this.compressedBytes.add(compressed.length);
+        LOG.trace("Compressed message [bytes={}, compressed={}, cpu_nanos={}]", body.length, compressed.length, elapsed);
+        
+        MessageProperties properties = message.getMessageProperties();
+        String encoding = properties.getContentEncoding();
+        properties.setContentEncoding(encoding == null ? ENCODING_DEFLATE : ENCODING_DEFLATE + ":" + encoding);
+        properties.setContentLength(compressed.length);
+        return new Message(compressed, properties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        MessageProperties properties = message.getMessageProperties();
+        String encoding = properties == null ? null : properties.getContentEncoding();
+        if(encoding == null || ! encoding.startsWith(ENCODING_DEFLATE) || message.getBody() == null)
+            return this.delegate.fromMessage(message);
+        
+        //Restore the encoding the delegate produced; anything else is not ours
+        String originalEncoding = null;
+        if(encoding.length() > ENCODING_DEFLATE.length()) {
+            if(encoding.charAt(ENCODING_DEFLATE.length()) != ':')
+                return this.delegate.fromMessage(message);
+            originalEncoding = encoding.substring(ENCODING_DEFLATE.length() + 1);
+        }
+        
+        long started = cpuTime();
+        byte[] body = inflate(message.getBody());
+        this.decompressionNanos.add(cpuTime() - started);
+        this.decompressedMessages.increment();
+        
+        //The delivered message may still be looked at by others, leave its properties describing its own body
+        MessageProperties inflatedProperties = MessagePropertiesBuilder.fromClonedProperties(properties)
+                .setContentEncoding(originalEncoding)
+                .setContentLength(body.length)
+                .build();
+        return this.delegate.fromMessage(new Message(body, inflatedProperties));
+    }
+    
+    protected byte[] deflate(byte[] body) {
+        Deflater deflater = this.deflaters.poll();
+        if(deflater == null)
+            deflater = new Deflater();
+        deflater.setLevel(this.level);
+        deflater.setInput(body);
+        deflater.finish();
+        
+        OutputBuffers.OutputBuffer outStream = this.outputBuffers.acquire();
+        byte[] chunk = this.chunks.get();
+        try {
+            while(! deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                outStream.write(chunk, 0, length);
+            }
+            return outStream.toByteArray();
+        } finally {
+            this.outputBuffers.release(outStream);
+            deflater.reset();
+            if(! this.deflaters.offer(deflater))
+                deflater.end();
+        }
+    }
+    
+    protected byte[] inflate(byte[] body) throws MessageConversionException {
+        Inflater inflater = this.inflaters.poll();
+        if(inflater == null)
+            inflater = new Inflater();
+        inflater.setInput(body);
+        
+        OutputBuffers.OutputBuffer outStream = this.outputBuffers.acquire();
+        byte[] chunk = this.chunks.get();
+        try {
+            while(! inflater.finished()) {
+                int length = inflater.inflate(chunk);
+                if(length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new MessageConversionException("Truncated or corrupt deflated message body");
+                if(outStream.size() + length > this.maxInflatedSize)
+                    throw new MessageConversionException("Inflated message body exceeds "+this.maxInflatedSize+" bytes");
+                outStream.write(chunk, 0, length);
+            }
+            return outStream.toByteArray();
+        } catch (DataFormatException ex) {
+            throw new MessageConversionException("Could not inflate message body", ex);
+        } finally {
+            this.outputBuffers.release(outStream);
+            inflater.reset();
+            if(! this.inflaters.offer(inflater))
+                inflater.end();
+        }
+    }
+    
+    /**
+     * Releases the native memory of the pooled deflaters and inflaters. The converter remains usable.
+     */
+    public void close() {
+        for(Deflater deflater; (deflater = this.deflaters.poll()) != null; )
+            deflater.end();
+        for(Inflater inflater; (inflater = this.inflaters.poll()) != null; )
+            inflater.end();
+    }
+    
+    private static long cpuTime() {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    public long getCompressedMessages() {
+        return this.compressedMessages.sum();
+    }
+
+    public long getUncompressedBytes() {
+        return this.uncompressedBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return this.compressedBytes.sum();
+    }
+
+    /**
+     * @return Compressed size as a fraction of the original size over all compressed messages, or 1 if none were compressed
+     */
+    public double getCompressionRatio() {
+        long uncompressed = getUncompressedBytes();
+        return uncompressed == 0 ? 1.0 : (double) getCompressedBytes() / uncompressed;
+    }
+
+    /**
+     * @return CPU time spent compressing, in nanoseconds (wall clock time if the JVM cannot measure CPU time)
+     */
+    public long getCompressionNanos() {
+        return this.compressionNanos.sum();
+    }
+
+    public long getDecompressedMessages() {
+        return this.decompressedMessages.sum();
+    }
+
+    /**
+     * @return CPU time spent decompressing, in nanoseconds (wall clock time if the JVM cannot measure CPU time)
+     */
+    public long getDecompressionNanos() {
+        return this.decompressionNanos.sum();
+    }
+}
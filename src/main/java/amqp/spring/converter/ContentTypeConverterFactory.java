@@ -3,34 +3,68 @@
  * You can obtain one at http://mozilla.org/MPL/2.0/. */
 package amqp.spring.converter;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.support.converter.AbstractMessageConverter;
 import org.springframework.amqp.support.converter.MessageConversionException;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
 
 /**
  * This Spring AMQP MessageConverter does not actually perform the conversion - 
  * instead it find an appropriate converter given the content type
  * within the message's properties.
+ * 
+ * Converters are registered by media type, which may use wildcards (text/*, application/*+json)
+ * and parameters (text/plain;charset=UTF-8). A content type is matched first against the
+ * registered keys exactly, then against the most specific media type that includes it and whose
+ * parameters it carries. Resolutions are cached by the raw content type header, so steady-state
+ * lookups are a single concurrent map read; changing the converters, through getConverters() or
+ * setConverters(), discards the cache.
  */
 public class ContentTypeConverterFactory extends AbstractMessageConverter {
-    protected Map<String, MessageConverter> converters;
+    private static final int MAX_CACHED_CONTENT_TYPES = 1024;
+    private static final Object NO_MATCH = new Object();
+    
+    //Only changed through the accessors, which keep the resolver's snapshot current
+    private Map<String, MessageConverter> converters;
     protected String defaultContentType = MessageProperties.CONTENT_TYPE_JSON;
     protected MessageConverter fallbackConverter = null;
+    
+    private final AtomicLong modifications = new AtomicLong();
+    private volatile Resolver resolver;
 
     public ContentTypeConverterFactory() {
-        this.converters = new HashMap<>();
+        this.converters = new ConverterMap();
     }
     
+    /**
+     * @return The registered converters; changes made through this map take effect immediately
+     */
     public Map<String, MessageConverter> getConverters() {
         return converters;
     }
 
+    /**
+     * Registers a copy of the given converters
+     */
     public void setConverters(Map<String, MessageConverter> converters) {
-        this.converters = converters;
+        ConverterMap converterMap = new ConverterMap();
+        converterMap.putAll(converters);
+        this.converters = converterMap;
+        this.modifications.incrementAndGet();
     }
 
     public String getDefaultContentType() {
@@ -52,9 +86,7 @@ public class ContentTypeConverterFactory extends AbstractMessageConverter {
     @Override
     protected Message createMessage(Object object, MessageProperties messageProperties) {
         String contentType = messageProperties.getContentType();
-        MessageConverter converter = converters.get(contentType);
-        if(converter == null) //Try to fall back
-            converter = this.fallbackConverter;
+        MessageConverter converter = resolve(contentType);
         if(converter == null) //Can't even fall back, punt
             throw new MessageConversionException("Cannot find converter for content type of "+contentType);
         
@@ -64,16 +96,193 @@ public class ContentTypeConverterFactory extends AbstractMessageConverter {
     @Override
     public Object fromMessage(Message message) throws MessageConversionException {
         MessageProperties messageProperties = message.getMessageProperties();
-        String contentType = messageProperties.getContentType();
         if(messageProperties == null)
             throw new MessageConversionException("Cannot decode a message with no properties!");
+        String contentType = messageProperties.getContentType();
         
-        MessageConverter converter = converters.get(contentType);
-        if(converter == null) //Try to fall back
-            converter = this.fallbackConverter;
+        MessageConverter converter = resolve(contentType);
         if(converter == null) //Can't even fall back, punt
             throw new MessageConversionException("Cannot find converter for content type of "+contentType);
         
         return converter.fromMessage(message);
     }
+    
+    /**
+     * @return The converter registered for the given content type, otherwise the fallback converter (which may be null)
+     */
+    protected MessageConverter resolve(String contentType) {
+        if(contentType == null)
+            return this.fallbackConverter;
+        
+        Resolver current = this.resolver;
+        long version = this.modifications.get();
+        if(current == null || current.version != version) {
+            current = new Resolver(version, this.converters);
+            this.resolver = current;
+        }
+        
+        Object converter = current.resolved.get(contentType);
+        if(converter == null) {
+            converter = current.match(contentType);
+            if(current.resolved.size() < MAX_CACHED_CONTENT_TYPES)
+                current.resolved.put(contentType, converter);
+        }
+        
+        return converter == NO_MATCH ? this.fallbackConverter : (MessageConverter) converter;
+    }
+    
+    /**
+     * An immutable snapshot of the registered media types, along with the content types resolved against it
+     */
+    private static class Resolver {
+        private static final Comparator<MediaRange> SPECIFICITY = Comparator
+                .comparing((MediaRange range) -> range.mimeType.isWildcardType())
+                .thenComparing(range -> range.mimeType.isWildcardSubtype())
+                .thenComparing(range -> range.mimeType.getSubtype().startsWith("*+"))
+                .thenComparing(range -> -range.mimeType.getParameters().size());
+        
+        private final long version;
+        private final Map<String, MessageConverter> exact;
+        private final List<MediaRange> ranges = new ArrayList<>();
+        private final Map<String, Object> resolved = new ConcurrentHashMap<>();
+        
+        public Resolver(long version, Map<String, MessageConverter> converters) {
+            this.version = version;
+            this.exact = new ConcurrentHashMap<>(converters);
+            for(Map.Entry<String, MessageConverter> entry : this.exact.entrySet()) {
+                try {
+                    this.ranges.add(new MediaRange(MimeTypeUtils.parseMimeType(entry.getKey()), entry.getValue()));
+                } catch(InvalidMimeTypeException ex) {
+                    //Only usable as an exact match
+                }
+            }
+            this.ranges.sort(SPECIFICITY);
+        }
+        
+        public Object match(String contentType) {
+            MessageConverter converter = this.exact.get(contentType);
+            if(converter != null)
+                return converter;
+            
+            MimeType mimeType;
+            try {
+                mimeType = MimeTypeUtils.parseMimeType(contentType);
+            } catch(InvalidMimeTypeException ex) {
+                return NO_MATCH;
+            }
+            
+            for(MediaRange range : this.ranges) {
+                if(range.includes(mimeType))
+                    return range.converter;
+            }
+            return NO_MATCH;
+        }
+    }
+    
+    private static class MediaRange {
+        private final MimeType mimeType;
+        private final MessageConverter converter;
+        
+        public MediaRange(MimeType mimeType, MessageConverter converter) {
+            this.mimeType = mimeType;
+            this.converter = converter;
+        }
+        
+        public boolean includes(MimeType other) {
+            if(! this.mimeType.includes(other))
+                return false;
+            
+            for(Map.Entry<String, String> parameter : this.mimeType.getParameters().entrySet()) {
+                String value = other.getParameter(parameter.getKey());
+                if(value == null || ! unquote(value).equalsIgnoreCase(unquote(parameter.getValue())))
+                    return false;
+            }
+            return true;
+        }
+        
+        private static String unquote(String value) {
+            return value.length() > 1 && value.startsWith("\"") && value.endsWith("\"") ? value.substring(1, value.length() - 1) : value;
+        }
+    }
+    
+    /**
+     * A concurrent map of converters that discards resolved content types whenever it changes
+     */
+    private class ConverterMap extends AbstractMap<String, MessageConverter> {
+        private final Map<String, MessageConverter> delegate = new ConcurrentHashMap<>();
+        
+        @Override
+        public MessageConverter get(Object key) {
+            return key == null ? null : this.delegate.get(key);
+        }
+        
+        @Override
+        public boolean containsKey(Object key) {
+            return key != null && this.delegate.containsKey(key);
+        }
+        
+        @Override
+        public MessageConverter put(String key, MessageConverter value) {
+            if(key == null || value == null)
+                throw new IllegalArgumentException("Converters must be registered under a content type");
+            
+            MessageConverter previous = this.delegate.put(key, value);
+            modifications.incrementAndGet();
+            return previous;
+        }
+        
+        @Override
+        public MessageConverter remove(Object key) {
+            MessageConverter previous = key == null ? null : this.delegate.remove(key);
+            modifications.incrementAndGet();
+            return previous;
+        }
+        
+        @Override
+        public void clear() {
+            this.delegate.clear();
+            modifications.incrementAndGet();
+        }
+        
+        @Override
+        public Set<Map.Entry<String, MessageConverter>> entrySet() {
+            return new AbstractSet<Map.Entry<String, MessageConverter>>() {
+                @Override
+                public Iterator<Map.Entry<String, MessageConverter>> iterator() {
+                    Iterator<Map.Entry<String, MessageConverter>> entries = delegate.entrySet().iterator();
+                    return new Iterator<Map.Entry<String, MessageConverter>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext();
+                        }
+                        
+                        @Override
+                        public Map.Entry<String, MessageConverter> next() {
+                            Map.Entry<String, MessageConverter> entry = entries.next();
+                            return new AbstractMap.SimpleEntry<String, MessageConverter>(entry) {
+                                private static final long serialVersionUID = 1L;
+                                
+                                @Override
+                                public MessageConverter setValue(MessageConverter value) {
+                                    super.setValue(value);
+                                    return put(getKey(), value);
+                                }
+                            };
+                        }
+                        
+                        @Override
+                        public void remove() {
+                            entries.remove();
+                            modifications.incrementAndGet();
+                        }
+                    };
+                }
+                
+                @Override
+                public int size() {
+                    return delegate.size();
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,208 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractMessageConverter;
+import org.springframework.amqp.support.converter.ClassMapper;
+import org.springframework.amqp.support.converter.DefaultClassMapper;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+/**
+ * Marshal (and un-marshal) a message into JSON using Jackson's streaming generator
+ * 
+ * This is a drop-in replacement for XStreamConverter: it writes the same ClassMapper type headers and
+ * only un-marshals types named in allowedTypes (plus strings, boxed primitives and plain collections).
+ * Object writers and readers are cached per class and each thread re-uses its own output buffer.
+ * Note that the JSON itself is Jackson's, not XStream's, so both ends of a queue should switch together.
+ */
+public class JacksonConverter extends AbstractMessageConverter {
+    private static transient final Logger LOG = LoggerFactory.getLogger(JacksonConverter.class);
+    private static final Set<String> DEFAULT_ALLOWED_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            String.class.getName(), Boolean.class.getName(), Character.class.getName(), Byte.class.getName(),
+            Short.class.getName(), Integer.class.getName(), Long.class.getName(), Float.class.getName(), Double.class.getName(),
+            java.util.ArrayList.class.getName(), java.util.LinkedList.class.getName(), java.util.HashMap.class.getName(),
+            java.util.LinkedHashMap.class.getName(), java.util.TreeMap.class.getName(), java.util.HashSet.class.getName(),
+            java.util.LinkedHashSet.class.getName())));
+    
+    protected String encoding = "UTF-8";
+    protected String[] allowedTypes = new String[0];
+    protected ClassMapper classMapper;
+    protected ObjectMapper objectMapper;
+    private volatile Set<String> allowedTypeNames = DEFAULT_ALLOWED_TYPES;
+    private JsonEncoding jsonEncoding = JsonEncoding.UTF8;
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final OutputBuffers outputBuffers = new OutputBuffers();
+
+    public JacksonConverter() {
+        DefaultClassMapper defaultClassMapper = new DefaultClassMapper();
+        //Type IDs are checked against allowedTypes instead
+        defaultClassMapper.setTrustedPackages("*");
+        this.classMapper = defaultClassMapper;
+        this.objectMapper = new ObjectMapper();
+    }
+    
+    public String[] getAllowedTypes() {
+        return allowedTypes;
+    }
+    
+    /**
+     * Adds specified types to the whitelist of types that may be un-marshalled
+     */
+    public void setAllowedTypes(String[] allowedTypes) {
+        Set<String> names = new HashSet<>(DEFAULT_ALLOWED_TYPES);
+        names.addAll(Arrays.asList(allowedTypes));
+        this.allowedTypeNames = names;
+        this.allowedTypes = allowedTypes;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @param encoding One of the encodings JSON allows: UTF-8, UTF-16BE, UTF-16LE, UTF-32BE or UTF-32LE
+     */
+    public void setEncoding(String encoding) {
+        for(JsonEncoding candidate : JsonEncoding.values()) {
+            if(candidate.getJavaName().equalsIgnoreCase(encoding)) {
+                this.jsonEncoding = candidate;
+                this.encoding = candidate.getJavaName();
+                return;
+            }
+        }
+        
+        throw new IllegalArgumentException("JSON cannot be encoded as "+encoding);
+    }
+
+    public ClassMapper getClassMapper() {
+        return classMapper;
+    }
+
+    public void setClassMapper(ClassMapper classMapper) {
+        this.classMapper = classMapper;
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.writers.clear();
+        this.readers.clear();
+    }
+
+    public BufferPool getBufferPool() {
+        return this.outputBuffers.getPool();
+    }
+
+    /**
+     * @param bufferPool Pool to draw scratch buffers from, instead of keeping one per thread
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.outputBuffers.setPool(bufferPool);
+    }
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        byte[] body = null;
+        if(object != null) {
+            body = marshal(object);
+            classMapper.fromClass(object.getClass(), messageProperties);
+        }
+        
+        messageProperties.setContentType(getContentType());
+        messageProperties.setContentEncoding(getContentEncoding());
+        messageProperties.setContentLength(body != null ? body.length : 0);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        MessageProperties messageProperties = message.getMessageProperties();
+        if(messageProperties == null)
+            throw new MessageConversionException("Cannot decode a message with no properties!");
+
+        byte[] body = message.getBody();
+        if(body == null)
+            return null;
+
+        String contentType = messageProperties.getContentType();
+        if(! MediaTypes.isSameType(getContentType(), contentType))
+            throw new MessageConversionException("Cannot understand a message of type "+contentType);
+
+        Class<?> type = this.classMapper.toClass(messageProperties);
+        if(! isAllowed(type))
+            throw new MessageConversionException("Type "+type.getName()+" is not an allowed type");
+
+        try {
+            return this.readers.computeIfAbsent(type, this::createReader).readValue(body);
+        } catch (IOException ex) {
+            LOG.error("Exception trying to unmarshal message of type {}", type.getName(), ex);
+            throw new MessageConversionException("Could not unmarshal message of type "+type.getName(), ex);
+        }
+    }
+    
+    /**
+     * @return The content type this converter writes and accepts
+     */
+    protected String getContentType() {
+        return MessageProperties.CONTENT_TYPE_JSON;
+    }
+    
+    /**
+     * @return The content encoding to advertise, or null for binary formats
+     */
+    protected String getContentEncoding() {
+        return this.encoding;
+    }
+    
+    protected ObjectWriter createWriter(Class<?> type) {
+        return this.objectMapper.writerFor(type);
+    }
+    
+    protected ObjectReader createReader(Class<?> type) {
+        return this.objectMapper.readerFor(type);
+    }
+    
+    protected boolean isAllowed(Class<?> type) {
+        return this.allowedTypeNames.contains(type.getName());
+    }
+    
+    protected byte[] marshal(Object object) throws MessageConversionException {
+        return marshal(this.writers.computeIfAbsent(object.getClass(), this::createWriter), object);
+    }
+    
+    protected byte[] marshal(ObjectWriter writer, Object object) throws MessageConversionException {
+        OutputBuffers.OutputBuffer outStream = this.outputBuffers.acquire();
+        try {
+            try(JsonGenerator generator = writer.createGenerator(outStream, this.jsonEncoding)) {
+                writer.writeValue(generator, object);
+            }
+            return outStream.toByteArray();
+        } catch (IOException ex) {
+            LOG.error("Exception trying to marshal message of type {}", object.getClass().getName(), ex);
+            throw new MessageConversionException("Could not marshal message of type "+object.getClass().getName(), ex);
+        } finally {
+            this.outputBuffers.release(outStream);
+        }
+    }
+}
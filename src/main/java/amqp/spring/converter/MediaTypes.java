@@ -0,0 +1,50 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import java.nio.charset.Charset;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Content type checks shared by the converters. Content types are compared by media type and subtype,
+ * so "application/json; charset=UTF-8" is still understood by a converter of "application/json".
+ * Plain content types are compared without parsing; Spring caches the parsed form of the rest.
+ */
+final class MediaTypes {
+    private MediaTypes() {
+    }
+
+    /**
+     * @return True if the content type has the expected media type and subtype, whatever its parameters
+     */
+    static boolean isSameType(String expected, String contentType) {
+        if(contentType == null)
+            return false;
+        if(expected.equalsIgnoreCase(contentType))
+            return true;
+
+        try {
+            return MimeTypeUtils.parseMimeType(expected).equalsTypeAndSubtype(MimeTypeUtils.parseMimeType(contentType));
+        } catch(InvalidMimeTypeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @return The charset parameter of the content type, or null if it has none
+     */
+    static Charset getCharset(String contentType) {
+        if(contentType == null || contentType.indexOf(';') < 0)
+            return null;
+
+        try {
+            MimeType mimeType = MimeTypeUtils.parseMimeType(contentType);
+            return mimeType.getCharset();
+        } catch(InvalidMimeTypeException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Objects;
+
+/**
+ * Per-thread output buffers that converters re-use across messages. A buffer starts at twice the
+ * rolling average message size and is shrunk back if an unusually large message grew it far beyond that.
+ * When a BufferPool is set, buffers are instead drawn from (and grown through) the pool, and handed back on release.
+ */
+class OutputBuffers {
+    private static final int MIN_BUFFER_SIZE = 256;
+    private static final int MAX_RETAINED_MULTIPLE = 8;
+    
+    private volatile int averageSize = MIN_BUFFER_SIZE;
+    private volatile BufferPool pool;
+    private final ThreadLocal<OutputBuffer> buffers = new ThreadLocal<>();
+    
+    public OutputBuffer acquire() {
+        BufferPool bufferPool = this.pool;
+        if(bufferPool != null)
+            return new OutputBuffer(bufferPool, Math.max(MIN_BUFFER_SIZE, this.averageSize * 2));
+        
+        OutputBuffer buffer = this.buffers.get();
+        if(buffer == null) {
+            buffer = new OutputBuffer(Math.max(MIN_BUFFER_SIZE, this.averageSize * 2));
+            this.buffers.set(buffer);
+        }
+        
+        buffer.reset();
+        return buffer;
+    }
+    
+    public void release(OutputBuffer buffer) {
+        int size = buffer.size();
+        int average = this.averageSize;
+        average += (size - average) / 16;
+        this.averageSize = average;
+        
+        if(buffer.pool != null) {
+            buffer.recycle();
+            return;
+        }
+        
+        //Don't let one oversized message pin a large buffer to this thread forever
+        int retained = Math.max(MIN_BUFFER_SIZE, average * 2);
+        if(buffer.capacity() > retained * MAX_RETAINED_MULTIPLE)
+            buffer.shrink(retained);
+    }
+    
+    public int getAverageSize() {
+        return this.averageSize;
+    }
+    
+    public BufferPool getPool() {
+        return this.pool;
+    }
+    
+    public void setPool(BufferPool pool) {
+        this.pool = pool;
+        this.buffers.remove();
+    }
+    
+    /**
+     * A re-usable output stream that can be shrunk back down after growing
+     */
+    static class OutputBuffer extends ByteArrayOutputStream {
+        private static final byte[] RECYCLED = new byte[0];
+        private final BufferPool pool;
+        
+        public OutputBuffer(int size) {
+            super(size);
+            this.pool = null;
+        }
+        
+        public OutputBuffer(BufferPool pool, int size) {
+            super(0);
+            this.pool = pool;
+            this.buf = pool.acquire(size);
+        }
+        
+        @Override
+        public synchronized void write(int b) {
+            grow(this.count + 1);
+            super.write(b);
+        }
+        
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            Objects.checkFromIndexSize(off, len, b.length);
+            grow(this.count + len);
+            super.write(b, off, len);
+        }
+        
+        public int capacity() {
+            return this.buf.length;
+        }
+        
+        public void shrink(int size) {
+            this.buf = new byte[size];
+            this.count = 0;
+        }
+        
+        /**
+         * Swaps a pooled buffer for a larger one from the same pool; unpooled buffers grow as usual
+         */
+        private void grow(int minCapacity) {
+            if(this.pool == null || minCapacity <= this.buf.length)
+                return;
+            if(minCapacity < 0)
+                throw new OutOfMemoryError("Output buffer too large");
+            
+            byte[] larger = this.pool.acquire(Math.max(minCapacity, (int) Math.min(Integer.MAX_VALUE - 8, this.buf.length * 2L)));
+            System.arraycopy(this.buf, 0, larger, 0, this.count);
+            this.pool.release(this.buf);
+            this.buf = larger;
+        }
+        
+        private synchronized void recycle() {
+            if(this.buf != RECYCLED)
+                this.pool.release(this.buf);
+            this.buf = RECYCLED;
+            this.count = 0;
+        }
+    }
+}
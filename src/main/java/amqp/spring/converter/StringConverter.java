@@ -1,84 +1,240 @@
-/* This Source Code Form is subject to the terms of the Mozilla Public
- * License, v. 2.0. If a copy of the MPL was not distributed with this file,
- * You can obtain one at http://mozilla.org/MPL/2.0/. */
-package amqp.spring.converter;
-
-import java.io.UnsupportedEncodingException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.support.converter.AbstractMessageConverter;
-import org.springframework.amqp.support.converter.MessageConversionException;
-
-/**
- * Marshal (and un-marshal) a message into a String given the message's encoding
- */
-public class StringConverter extends AbstractMessageConverter {
-    private static transient final Logger LOG = LoggerFactory.getLogger(StringConverter.class);
-    public static final String DEFAULT_CONTENT_TYPE = "application/text";
-    
-    protected String encoding = "UTF-8";
-    protected String contentType = null;
-
-    public String getContentType() {
-        return contentType;
-    }
-
-    public void setContentType(String contentType) {
-        this.contentType = contentType;
-    }
-
-    public String getEncoding() {
-        return encoding;
-    }
-
-    public void setEncoding(String encoding) {
-        this.encoding = encoding;
-    }
-    
-    @Override
-    protected Message createMessage(Object object, MessageProperties messageProperties) {
-        try {
-            byte[] body = null;
-            if(object != null) {
-                body = object.toString().getBytes(this.encoding);
-            }
-            
-            String msgContentType = this.contentType == null ? DEFAULT_CONTENT_TYPE : this.contentType;
-            messageProperties.setContentType(msgContentType);
-            messageProperties.setContentEncoding(this.encoding);
-            messageProperties.setContentLength(body != null ? body.length : 0);
-            return new Message(body, messageProperties);
-        } catch (UnsupportedEncodingException ex) {
-            LOG.error("Cannot encode strings as {}", this.encoding, ex);
-            throw new MessageConversionException("Cannot encode strings as "+this.encoding, ex);
-        }
-    }
-
-    @Override
-    public Object fromMessage(Message message) throws MessageConversionException {
-        MessageProperties messageProperties = message.getMessageProperties();
-        if(messageProperties == null)
-            throw new MessageConversionException("Cannot decode a message with no properties!");
-
-        byte[] body = message.getBody();
-        if(body == null)
-            return null;
-
-        String messageEncoding = messageProperties.getContentEncoding();
-        if(messageEncoding == null)
-            messageEncoding = this.encoding;
-
-        String messageContentType = messageProperties.getContentType();
-        if(this.contentType != null && ! this.contentType.equalsIgnoreCase(messageContentType))
-            throw new MessageConversionException("Cannot understand a message of type "+messageContentType);
-
-        try {
-            return new String(body, messageEncoding);
-        } catch (UnsupportedEncodingException ex) {
-            LOG.error("Cannot decode strings as {}", this.encoding, ex);
-            throw new MessageConversionException("Cannot decode strings as "+this.encoding, ex);
-        }
-    }
-}
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+/**
+ * Marshal (and un-marshal) a message into a String given the message's encoding
+ * 
+ * Charsets are looked up once per encoding name. CharSequence bodies other than String (such as
+ * StringBuilder) are encoded straight into a re-used buffer rather than through an intermediate String.
+ * With charSequenceView enabled, single-byte payloads (US-ASCII, ISO-8859-1, or UTF-8 that is pure ASCII)
+ * are returned as a ByteCharSequence over the message body instead of being copied into a String.
+ */
+public class StringConverter extends AbstractMessageConverter {
+    private static transient final Logger LOG = LoggerFactory.getLogger(StringConverter.class);
+    public static final String DEFAULT_CONTENT_TYPE = "application/text";
+    private static final Map<String, Charset> CHARSETS = new ConcurrentHashMap<>();
+    private static final int CHUNK_SIZE = 8192;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    
+    protected String encoding = "UTF-8";
+    protected String contentType = null;
+    protected boolean charSequenceView = false;
+    private volatile Charset charset = StandardCharsets.UTF_8;
+    private final OutputBuffers outputBuffers = new OutputBuffers();
+    private final ThreadLocal<CharsetEncoder> encoders = new ThreadLocal<>();
+    private final ThreadLocal<CharBuffer> charChunks = ThreadLocal.withInitial(() -> CharBuffer.allocate(CHUNK_SIZE));
+    private final ThreadLocal<ByteBuffer> byteChunks = ThreadLocal.withInitial(() -> ByteBuffer.allocate(CHUNK_SIZE));
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(String encoding) {
+        this.charset = lookupCharset(encoding);
+        this.encoding = encoding;
+    }
+
+    public boolean isCharSequenceView() {
+        return charSequenceView;
+    }
+
+    /**
+     * @param charSequenceView If true, single-byte payloads are un-marshalled as a ByteCharSequence view instead of a String
+     */
+    public void setCharSequenceView(boolean charSequenceView) {
+        this.charSequenceView = charSequenceView;
+    }
+    
+    public BufferPool getBufferPool() {
+        return this.outputBuffers.getPool();
+    }
+
+    /**
+     * @param bufferPool Pool to draw scratch buffers from, instead of keeping one per thread
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.outputBuffers.setPool(bufferPool);
+    }
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties) {
+        byte[] body = null;
+        if(object instanceof String) {
+            body = ((String) object).getBytes(this.charset);
+        } else if(object instanceof CharSequence) {
+            body = encode((CharSequence) object);
+        } else if(object != null) {
+            body = object.toString().getBytes(this.charset);
+        }
+        
+        String msgContentType = this.contentType == null ? DEFAULT_CONTENT_TYPE : this.contentType;
+        messageProperties.setContentType(msgContentType);
+        messageProperties.setContentEncoding(this.encoding);
+        messageProperties.setContentLength(body != null ? body.length : 0);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        MessageProperties messageProperties = message.getMessageProperties();
+        if(messageProperties == null)
+            throw new MessageConversionException("Cannot decode a message with no properties!");
+
+        byte[] body = message.getBody();
+        if(body == null)
+            return null;
+
+        String messageContentType = messageProperties.getContentType();
+        if(this.contentType != null && ! MediaTypes.isSameType(this.contentType, messageContentType))
+            throw new MessageConversionException("Cannot understand a message of type "+messageContentType);
+
+        //A charset on the content type takes precedence over the content encoding
+        Charset messageCharset = MediaTypes.getCharset(messageContentType);
+        if(messageCharset == null) {
+            String messageEncoding = messageProperties.getContentEncoding();
+            messageCharset = messageEncoding == null ? this.charset : lookupCharset(messageEncoding);
+        }
+
+        if(this.charSequenceView && isSingleByte(messageCharset, body))
+            return new ByteCharSequence(body);
+        return new String(body, messageCharset);
+    }
+    
+    protected static Charset lookupCharset(String encoding) throws MessageConversionException {
+        Charset charset = CHARSETS.get(encoding);
+        if(charset != null)
+            return charset;
+        
+        try {
+            charset = Charset.forName(encoding);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+            LOG.error("Cannot encode strings as {}", encoding, ex);
+            throw new MessageConversionException("Cannot encode strings as "+encoding, ex);
+        }
+        
+        CHARSETS.put(encoding, charset);
+        return charset;
+    }
+    
+    /**
+     * @return True if every byte of the body decodes to the char of the same value
+     */
+    protected static boolean isSingleByte(Charset charset, byte[] body) {
+        if(StandardCharsets.ISO_8859_1.equals(charset))
+            return true;
+        if(! StandardCharsets.US_ASCII.equals(charset) && ! StandardCharsets.UTF_8.equals(charset))
+            return false;
+        
+        //Test the sign bits eight bytes at a time
+        int i = 0;
+        for(; i + Long.BYTES <= body.length; i += Long.BYTES) {
+            if(((long) LONGS.get(body, i) & 0x8080808080808080L) != 0)
+                return false;
+        }
+        for(; i < body.length; ++i) {
+            if(body[i] < 0)
+                return false;
+        }
+        return true;
+    }
+    
+    protected byte[] encode(CharSequence text) throws MessageConversionException {
+        //Each thread's cached encoder is replaced once it notices the encoding has changed
+        Charset charset = this.charset;
+        CharsetEncoder encoder = this.encoders.get();
+        if(encoder == null || encoder.charset() != charset) {
+            //Replace what can't be encoded, just as String.getBytes does
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.encoders.set(encoder);
+        }
+        encoder.reset();
+        
+        //Chars are copied a chunk at a time into a heap buffer, which the encoders handle far faster than a wrapped CharSequence
+        CharBuffer in = this.charChunks.get();
+        ByteBuffer out = this.byteChunks.get();
+        in.clear();
+        out.clear();
+        OutputBuffers.OutputBuffer outStream = this.outputBuffers.acquire();
+        try {
+            int length = text.length();
+            int read = 0;
+            CoderResult result;
+            do {
+                int count = Math.min(in.remaining(), length - read);
+                copyChars(text, read, read + count, in.array(), in.arrayOffset() + in.position());
+                in.position(in.position() + count);
+                read += count;
+                
+                in.flip();
+                do {
+                    result = encoder.encode(in, out, read == length);
+                    if(result.isError())
+                        result.throwException();
+                    if(result.isOverflow())
+                        drain(out, outStream);
+                } while(result.isOverflow());
+                //Keep any trailing high surrogate for the next chunk
+                in.compact();
+            } while(read < length);
+            
+            while(encoder.flush(out).isOverflow())
+                drain(out, outStream);
+            drain(out, outStream);
+            return outStream.toByteArray();
+        } catch (CharacterCodingException ex) {
+            throw new MessageConversionException("Cannot encode strings as "+charset.name(), ex);
+        } finally {
+            this.outputBuffers.release(outStream);
+        }
+    }
+    
+    private static void copyChars(CharSequence text, int start, int end, char[] dest, int offset) {
+        if(text instanceof StringBuilder) {
+            ((StringBuilder) text).getChars(start, end, dest, offset);
+        } else if(text instanceof StringBuffer) {
+            ((StringBuffer) text).getChars(start, end, dest, offset);
+        } else {
+            for(int i = start; i < end; ++i)
+                dest[offset++] = text.charAt(i);
+        }
+    }
+    
+    private static void drain(ByteBuffer out, OutputBuffers.OutputBuffer outStream) {
+        outStream.write(out.array(), out.arrayOffset(), out.position());
+        out.clear();
+    }
+}
@@ -0,0 +1,196 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Marshal (and un-marshal) a message into JSON, identifying its type by a numeric ID agreed upon in advance
+ * 
+ * Producers and consumers register the same ID for each type (see setTypes), and a message then carries
+ * only a small integer header instead of the fully qualified class name. Writers and readers are built
+ * once when a type is registered, and incoming IDs are found by binary search over a sorted int array.
+ * The registry doubles as the whitelist of types that may be un-marshalled.
+ * 
+ * Types that aren't registered are sent with ClassMapper headers just as JacksonConverter would, and
+ * messages without an ID header are read that way (subject to allowedTypes), so queues can be migrated
+ * one type at a time. Those messages carry an empty ID header rather than none at all: a route that
+ * consumed a registered type and publishes something else would otherwise forward the stale ID it
+ * received along with the new body, since headers the converter leaves unset are copied from Camel.
+ */
+public class TypeRegistryConverter extends JacksonConverter {
+    private static transient final Logger LOG = LoggerFactory.getLogger(TypeRegistryConverter.class);
+    public static final String DEFAULT_TYPE_ID_HEADER = "_t";
+    public static final String UNTYPED = "";
+    
+    protected String typeIdHeader = DEFAULT_TYPE_ID_HEADER;
+    private volatile Registry registry = new Registry(new TreeMap<>());
+
+    public String getTypeIdHeader() {
+        return typeIdHeader;
+    }
+
+    public void setTypeIdHeader(String typeIdHeader) {
+        this.typeIdHeader = typeIdHeader;
+    }
+
+    /**
+     * @return The registered class names, by type ID
+     */
+    public Map<Integer, String> getTypes() {
+        Map<Integer, String> types = new TreeMap<>();
+        for(Entry entry : this.registry.entries)
+            types.put(entry.id, entry.type.getName());
+        return types;
+    }
+
+    /**
+     * Replaces the registry with the given class names, keyed by their type IDs
+     */
+    public synchronized void setTypes(Map<Integer, String> types) {
+        Map<Integer, Class<?>> classes = new TreeMap<>();
+        for(Map.Entry<Integer, String> type : types.entrySet()) {
+            try {
+                classes.put(type.getKey(), ClassUtils.forName(type.getValue(), ClassUtils.getDefaultClassLoader()));
+            } catch (ClassNotFoundException | LinkageError ex) {
+                throw new IllegalArgumentException("Cannot register unknown type "+type.getValue(), ex);
+            }
+        }
+        this.registry = new Registry(classes);
+    }
+
+    /**
+     * Registers a single type under the given ID
+     */
+    public synchronized void register(int id, Class<?> type) {
+        Map<Integer, Class<?>> classes = this.registry.toMap();
+        Class<?> existing = classes.putIfAbsent(id, type);
+        if(existing != null)
+            throw new IllegalArgumentException("Type ID "+id+" is already registered to "+existing.getName());
+        this.registry = new Registry(classes);
+    }
+
+    @Override
+    public synchronized void setObjectMapper(ObjectMapper objectMapper) {
+        super.setObjectMapper(objectMapper);
+        this.registry = new Registry(this.registry.toMap());
+    }
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        Entry entry = object == null ? null : this.registry.byClass.get(object.getClass());
+        if(entry == null) {
+            messageProperties.setHeader(this.typeIdHeader, UNTYPED);
+            return super.createMessage(object, messageProperties);
+        }
+        
+        byte[] body = marshal(entry.writer, object);
+        messageProperties.setHeader(this.typeIdHeader, entry.id);
+        messageProperties.setContentType(getContentType());
+        messageProperties.setContentEncoding(getContentEncoding());
+        messageProperties.setContentLength(body.length);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        MessageProperties messageProperties = message.getMessageProperties();
+        Object typeId = messageProperties == null ? null : messageProperties.getHeader(this.typeIdHeader);
+        if(typeId == null || UNTYPED.equals(typeId.toString()))
+            return super.fromMessage(message);
+
+        byte[] body = message.getBody();
+        if(body == null)
+            return null;
+
+        String contentType = messageProperties.getContentType();
+        if(! MediaTypes.isSameType(getContentType(), contentType))
+            throw new MessageConversionException("Cannot understand a message of type "+contentType);
+
+        Entry entry = this.registry.find(toId(typeId));
+        try {
+            return entry.reader.readValue(body);
+        } catch (IOException ex) {
+            LOG.error("Exception trying to unmarshal message of type {}", entry.type.getName(), ex);
+            throw new MessageConversionException("Could not unmarshal message of type "+entry.type.getName(), ex);
+        }
+    }
+    
+    private static int toId(Object typeId) throws MessageConversionException {
+        if(typeId instanceof Integer || typeId instanceof Short || typeId instanceof Byte)
+            return ((Number) typeId).intValue();
+        
+        try {
+            //Other clients may send the ID as a long or a string
+            return typeId instanceof Long ? Math.toIntExact((Long) typeId) : Integer.parseInt(typeId.toString());
+        } catch (ArithmeticException | NumberFormatException ex) {
+            throw new MessageConversionException("Invalid type ID "+typeId, ex);
+        }
+    }
+    
+    private static final class Entry {
+        private final int id;
+        private final Class<?> type;
+        private final ObjectWriter writer;
+        private final ObjectReader reader;
+        
+        private Entry(int id, Class<?> type, ObjectWriter writer, ObjectReader reader) {
+            this.id = id;
+            this.type = type;
+            this.writer = writer;
+            this.reader = reader;
+        }
+    }
+    
+    /**
+     * An immutable snapshot of the registered types, replaced as a whole whenever a type is added
+     */
+    private final class Registry {
+        private final int[] ids;
+        private final Entry[] entries;
+        private final Map<Class<?>, Entry> byClass = new IdentityHashMap<>();
+        
+        private Registry(Map<Integer, Class<?>> classes) {
+            this.ids = new int[classes.size()];
+            this.entries = new Entry[classes.size()];
+            
+            //Iterating the sorted map leaves the IDs in ascending order for binary search
+            int i = 0;
+            for(Map.Entry<Integer, Class<?>> type : new TreeMap<>(classes).entrySet()) {
+                Entry entry = new Entry(type.getKey(), type.getValue(), createWriter(type.getValue()), createReader(type.getValue()));
+                if(this.byClass.putIfAbsent(entry.type, entry) != null)
+                    throw new IllegalArgumentException("Type "+entry.type.getName()+" is registered more than once");
+                this.ids[i] = entry.id;
+                this.entries[i++] = entry;
+            }
+        }
+        
+        private Entry find(int id) throws MessageConversionException {
+            int index = Arrays.binarySearch(this.ids, id);
+            if(index < 0)
+                throw new MessageConversionException("Type ID "+id+" is not registered");
+            return this.entries[index];
+        }
+        
+        private Map<Integer, Class<?>> toMap() {
+            Map<Integer, Class<?>> classes = new TreeMap<>();
+            for(Entry entry : this.entries)
+                classes.put(entry.id, entry.type);
+            return classes;
+        }
+    }
+}
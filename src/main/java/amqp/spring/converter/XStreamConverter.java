@@ -9,7 +9,7 @@ import com.thoughtworks.xstream.io.xml.QNameMap;
 import com.thoughtworks.xstream.io.xml.StaxReader;
 import com.thoughtworks.xstream.io.xml.StaxWriter;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 import javax.xml.stream.XMLStreamException;
@@ -26,6 +26,9 @@ import org.springframework.amqp.support.converter.MessageConversionException;
 
 /**
  * Marshal (and un-marshal) a message into JSON using XStream
+ * 
+ * Each thread re-uses its own output buffer and input stream across messages, so the only per-message
+ * copy left on our side is the message body itself.
  */
 public class XStreamConverter extends AbstractMessageConverter {
     private static transient final Logger LOG = LoggerFactory.getLogger(XStreamConverter.class);
@@ -36,6 +39,9 @@ public class XStreamConverter extends AbstractMessageConverter {
     protected XStream objectMapper;
     protected MappedXMLOutputFactory outputFactory;
     protected MappedXMLInputFactory inputFactory;
+    protected final QNameMap qnameMap = new QNameMap();
+    private final OutputBuffers outputBuffers = new OutputBuffers();
+    private final ThreadLocal<InputBuffer> inputBuffers = ThreadLocal.withInitial(InputBuffer::new);
 
     public XStreamConverter() {
         this.classMapper = new DefaultClassMapper();
@@ -66,15 +72,30 @@ public class XStreamConverter extends AbstractMessageConverter {
         this.encoding = encoding;
     }
 
+    public BufferPool getBufferPool() {
+        return this.outputBuffers.getPool();
+    }
+
+    /**
+     * @param bufferPool Pool to draw scratch buffers from, instead of keeping one per thread
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.outputBuffers.setPool(bufferPool);
+    }
+
     @Override
     protected Message createMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
         try {
             byte[] body = null;
             if(object != null) {
-                ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-                StaxWriter writer = new StaxWriter(new QNameMap(), this.outputFactory.createXMLStreamWriter(outStream));
-                this.objectMapper.marshal(object, writer);
-                body = outStream.toByteArray();
+                OutputBuffers.OutputBuffer outStream = this.outputBuffers.acquire();
+                try {
+                    StaxWriter writer = new StaxWriter(this.qnameMap, this.outputFactory.createXMLStreamWriter(outStream));
+                    this.objectMapper.marshal(object, writer);
+                    body = outStream.toByteArray();
+                } finally {
+                    this.outputBuffers.release(outStream);
+                }
                 
                 classMapper.fromClass(object.getClass(), messageProperties);
             }
@@ -105,18 +126,24 @@ public class XStreamConverter extends AbstractMessageConverter {
         if(body == null)
             return null;
 
-        String messageEncoding = messageProperties.getContentEncoding();
-        if(messageEncoding == null)
-            messageEncoding = getEncoding();
-
         String contentType = messageProperties.getContentType();
-        if(! MessageProperties.CONTENT_TYPE_JSON.equalsIgnoreCase(contentType))
+        if(! MediaTypes.isSameType(MessageProperties.CONTENT_TYPE_JSON, contentType))
             throw new MessageConversionException("Cannot understand a message of type "+contentType);
 
+        //A charset on the content type takes precedence over the content encoding
+        Charset contentCharset = MediaTypes.getCharset(contentType);
+        String messageEncoding = contentCharset != null ? contentCharset.name() : messageProperties.getContentEncoding();
+        if(messageEncoding == null)
+            messageEncoding = getEncoding();
+
         try {
-            ByteArrayInputStream inStream = new ByteArrayInputStream(body);
-            StaxReader reader = new StaxReader(new QNameMap(), this.inputFactory.createXMLStreamReader(inStream, messageEncoding));
-            return this.objectMapper.unmarshal(reader);
+            InputBuffer inStream = this.inputBuffers.get().wrap(body);
+            try {
+                StaxReader reader = new StaxReader(this.qnameMap, this.inputFactory.createXMLStreamReader(inStream, messageEncoding));
+                return this.objectMapper.unmarshal(reader);
+            } finally {
+                inStream.wrap(null);
+            }
         } catch (XMLStreamException ex) {
             String typeId = (String) messageProperties.getHeaders().get(DefaultClassMapper.DEFAULT_CLASSID_FIELD_NAME);
             LOG.error("XMLStreamException trying to unmarshal message of type {}", typeId, ex);
@@ -128,4 +155,23 @@ public class XStreamConverter extends AbstractMessageConverter {
             throw new MessageConversionException("Could not unmarshal message of type "+typeId, ex);
         }
     }
+
+    /**
+     * A re-usable input stream over the body of the message being read
+     */
+    protected static class InputBuffer extends ByteArrayInputStream {
+        private static final byte[] EMPTY = new byte[0];
+        
+        public InputBuffer() {
+            super(EMPTY);
+        }
+        
+        public InputBuffer wrap(byte[] body) {
+            this.buf = body == null ? EMPTY : body;
+            this.pos = 0;
+            this.mark = 0;
+            this.count = this.buf.length;
+            return this;
+        }
+    }
 }
@@ -0,0 +1,92 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import com.rabbitmq.client.Channel;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AcknowledgementTrackerTest {
+    @Test
+    public void testOutOfOrderCompletion() throws Exception {
+        List<String> acks = new ArrayList<>();
+        AcknowledgementTracker tracker = new AcknowledgementTracker(recordingChannel(acks));
+        for(long tag = 1; tag <= 4; ++tag)
+            tracker.delivered(tag);
+        
+        tracker.complete(3L);
+        tracker.complete(2L);
+        Assertions.assertTrue(acks.isEmpty());
+        Assertions.assertEquals(4, tracker.getOutstandingCount());
+        
+        tracker.complete(1L);
+        Assertions.assertEquals(List.of("3:true"), acks);
+        Assertions.assertEquals(1, tracker.getOutstandingCount());
+        
+        tracker.complete(4L);
+        Assertions.assertEquals(List.of("3:true", "4:true"), acks);
+        Assertions.assertEquals(0, tracker.getOutstandingCount());
+    }
+    
+    @Test
+    public void testUnknownCompletionIgnored() throws Exception {
+        List<String> acks = new ArrayList<>();
+        AcknowledgementTracker tracker = new AcknowledgementTracker(recordingChannel(acks));
+        tracker.delivered(5L);
+        tracker.complete(7L);
+        tracker.complete(5L);
+        Assertions.assertEquals(List.of("5:true"), acks);
+    }
+    
+    @Test
+    public void testRejectedDeliveries() throws Exception {
+        List<String> acks = new ArrayList<>();
+        AcknowledgementTracker tracker = new AcknowledgementTracker(recordingChannel(acks));
+        for(long tag = 1; tag <= 4; ++tag)
+            tracker.delivered(tag);
+        
+        //A failure is rejected on its own, never folded into a multiple ack
+        tracker.complete(3L);
+        tracker.reject(2L, true);
+        Assertions.assertEquals(List.of("nack 2:false:true"), acks);
+        
+        tracker.complete(1L);
+        Assertions.assertEquals(List.of("nack 2:false:true", "3:true"), acks);
+        
+        //Rejecting the oldest delivery releases the completions waiting behind it
+        tracker.delivered(5L);
+        tracker.complete(5L);
+        tracker.reject(4L, false);
+        Assertions.assertEquals(List.of("nack 2:false:true", "3:true", "nack 4:false:false", "5:true"), acks);
+        Assertions.assertEquals(0, tracker.getOutstandingCount());
+    }
+    
+    @Test
+    public void testClosedTrackerIgnoresCompletions() throws Exception {
+        List<String> acks = new ArrayList<>();
+        AcknowledgementTracker tracker = new AcknowledgementTracker(recordingChannel(acks));
+        tracker.delivered(1L);
+        tracker.delivered(2L);
+        
+        //Completions straggling in after the channel shut down must not reach its replacement
+        tracker.close();
+        tracker.complete(1L);
+        tracker.reject(2L, true);
+        Assertions.assertTrue(acks.isEmpty());
+        Assertions.assertEquals(0, tracker.getOutstandingCount());
+    }
+    
+    private static Channel recordingChannel(List<String> acks) {
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] {Channel.class}, (proxy, method, args) -> {
+            if("basicAck".equals(method.getName()))
+                acks.add(args[0] + ":" + args[1]);
+            else if("basicNack".equals(method.getName()))
+                acks.add("nack " + args[0] + ":" + args[1] + ":" + args[2]);
+            return null;
+        });
+    }
+}
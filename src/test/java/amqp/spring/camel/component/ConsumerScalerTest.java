@@ -0,0 +1,66 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+public class ConsumerScalerTest {
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(5);
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    
+    @Test
+    public void testScaleUpToDrainBacklog() throws Exception {
+        //1000 messages at 50ms each need 10 consumers to drain within 5 seconds
+        Assertions.assertEquals(10, ConsumerScaler.targetConsumers(2, 1, 20, 1000, 50 * MILLIS, 2 * INTERVAL, INTERVAL));
+        //...but never more than the maximum
+        Assertions.assertEquals(4, ConsumerScaler.targetConsumers(2, 1, 4, 1000, 50 * MILLIS, 2 * INTERVAL, INTERVAL));
+        //A backlog with nothing completed adds a single consumer
+        Assertions.assertEquals(3, ConsumerScaler.targetConsumers(2, 1, 4, 10, 0, 0, INTERVAL));
+    }
+    
+    @Test
+    public void testScaleDownWhenIdle() throws Exception {
+        Assertions.assertEquals(3, ConsumerScaler.targetConsumers(4, 1, 8, 0, 10 * MILLIS, INTERVAL / 10, INTERVAL));
+        Assertions.assertEquals(1, ConsumerScaler.targetConsumers(1, 1, 8, 0, 0, 0, INTERVAL));
+        //Busy consumers with an empty queue are left alone
+        Assertions.assertEquals(4, ConsumerScaler.targetConsumers(4, 1, 8, 0, 10 * MILLIS, 3 * INTERVAL, INTERVAL));
+    }
+    
+    @Test
+    public void testInitialize() throws Exception {
+        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer();
+        ConsumerScaler scaler = new ConsumerScaler(container, null, "test.queue", 2, 6);
+        scaler.initialize(1);
+        Assertions.assertEquals(2, scaler.getConsumers());
+        scaler.initialize(10);
+        Assertions.assertEquals(6, scaler.getConsumers());
+        
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ConsumerScaler(container, null, "test.queue", 3, 2));
+    }
+    
+    @Test
+    public void testFirstIntervalStartsAtFirstRun() throws Exception {
+        Properties queueProperties = new Properties();
+        queueProperties.put(RabbitAdmin.QUEUE_MESSAGE_COUNT, 0);
+        AmqpAdmin amqpAdmin = (AmqpAdmin) Proxy.newProxyInstance(AmqpAdmin.class.getClassLoader(), new Class<?>[] {AmqpAdmin.class},
+                (proxy, method, args) -> "getQueueProperties".equals(method.getName()) ? queueProperties : null);
+        ConsumerScaler scaler = new ConsumerScaler(new SimpleMessageListenerContainer(), amqpAdmin, "test.queue", 1, 8);
+        scaler.initialize(4);
+        
+        //Time before the first run, such as container startup, isn't counted as idle
+        scaler.run();
+        Assertions.assertEquals(4, scaler.getConsumers());
+        
+        //Later intervals are measured from the previous run
+        scaler.run();
+        Assertions.assertEquals(3, scaler.getConsumers());
+    }
+}
@@ -94,6 +94,36 @@ public class ContrivedLoadTest {
                 String.format("Possible performance issue: %d messages took %f seconds with %d consumers", messageCount, elapsedTime, maxPoolSize));
     }
     
+    @Test
+    public void testAsyncRequestReply() throws Exception {
+        final int messageCount = 1000;
+        int received = 0;
+        List<Future<String>> futures = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
+        for(int i=0; i < messageCount; ++i)
+            futures.add(this.template.asyncRequestBody("direct:asyncReply", "HELLO WORLD", String.class));
+        LOG.info("Time to submit asynchronous request/reply messages: {}", (System.currentTimeMillis() - startTime) / 1000.0f);
+
+        startTime = System.currentTimeMillis();
+        for(Future<String> future : futures) {
+            String response = future.get(20, TimeUnit.SECONDS);
+            if("RESPONSE".equals(response)) {
+                ++received;
+            } else {
+                LOG.warn("Unexpected response '{}'", response);
+            }
+        }
+        float elapsedTime = (System.currentTimeMillis() - startTime) / 1000.0f;
+        int maxPoolSize = this.camelContext.getExecutorServiceManager().getDefaultThreadPoolProfile().getMaxPoolSize();
+        LOG.info("Time to receive asynchronous request/reply messages: {}", elapsedTime);
+        
+        Assertions.assertEquals(messageCount, received);
+        //The responder consumes twice as many messages at once as the pool has threads. If every in-flight
+        //request parked a pool thread we could not beat one second per pool's worth of messages.
+        Assertions.assertTrue(elapsedTime < messageCount / (double) maxPoolSize,
+                String.format("Requests appear bounded by the thread pool: %d messages took %f seconds with %d threads", messageCount, elapsedTime, maxPoolSize));
+    }
+    
     @Handler
     public String handle(String body) {
         try {
@@ -0,0 +1,50 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import com.rabbitmq.client.Channel;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PrefetchTunerTest {
+    @Test
+    public void testEstimateRoundTrip() throws Exception {
+        //A window of 2 messages taking 1ms each, idling 4ms per message: the round trip is 9ms
+        Assertions.assertEquals(9.0, PrefetchTuner.estimateRoundTrip(2, 1.0, 4.0), 0.001);
+        Assertions.assertEquals(0.0, PrefetchTuner.estimateRoundTrip(1, 1.0, 0.0), 0.001);
+    }
+    
+    @Test
+    public void testTargetPrefetch() throws Exception {
+        //Covering a 9ms round trip of 1ms messages takes 10 messages, plus one of headroom
+        Assertions.assertEquals(11, PrefetchTuner.targetPrefetch(2, 250, 0, 1.0, 9.0, 100));
+        //Capped by the maximum
+        Assertions.assertEquals(5, PrefetchTuner.targetPrefetch(2, 5, 0, 1.0, 9.0, 100));
+        //Capped by the memory limit
+        Assertions.assertEquals(4, PrefetchTuner.targetPrefetch(2, 250, 4096, 1.0, 9.0, 1024));
+        //Slow messages shrink the window
+        Assertions.assertEquals(3, PrefetchTuner.targetPrefetch(11, 250, 0, 100.0, 9.0, 100));
+        //No estimate yet keeps the current window
+        Assertions.assertEquals(3, PrefetchTuner.targetPrefetch(3, 250, 0, 1.0, -1, 100));
+    }
+    
+    @Test
+    public void testInitialWindowApplied() throws Exception {
+        List<String> qos = new ArrayList<>();
+        Channel channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] {Channel.class}, (proxy, method, args) -> {
+            if("basicQos".equals(method.getName()))
+                qos.add(args[0] + ":" + args[1]);
+            return null;
+        });
+        
+        PrefetchTuner tuner = new PrefetchTuner(channel, 1, 250, 0);
+        tuner.completed(tuner.delivered(100));
+        tuner.completed(tuner.delivered(100));
+        Assertions.assertEquals(List.of("1:true"), qos);
+        Assertions.assertEquals(1, tuner.getPrefetch());
+    }
+}
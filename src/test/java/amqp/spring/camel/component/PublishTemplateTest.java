@@ -0,0 +1,44 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import amqp.spring.converter.StringConverter;
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+
+public class PublishTemplateTest {
+    @Test
+    public void testTemplate() throws Exception {
+        CamelContext context = new DefaultCamelContext();
+        SpringAMQPEndpoint endpoint = new SpringAMQPEndpoint(new SpringAMQPComponent(new CachingConnectionFactory()), "spring-amqp:exchange1:queue1:routingKey1", "exchange1:queue1:routingKey1", null, null);
+        endpoint.setExcludeHeaders("Camel*");
+        StringConverter converter = new StringConverter();
+        PublishTemplate template = new PublishTemplate(endpoint, converter);
+        Assertions.assertSame(converter, template.getMessageConverter());
+        
+        SpringAMQPMessage camelMessage = new SpringAMQPMessage(context);
+        camelMessage.setBody("Test Message");
+        camelMessage.setHeader("CamelFileName", "file.txt");
+        camelMessage.setHeader("Secret", "My Secret");
+        new DefaultExchange(context).setIn(camelMessage);
+        Assertions.assertEquals("exchange1", template.resolveExchangeName(camelMessage));
+        Assertions.assertEquals("routingKey1", template.resolveRoutingKey(camelMessage));
+        
+        Message amqpMessage = template.toAMQPMessage(camelMessage);
+        Assertions.assertEquals("Test Message", new String(amqpMessage.getBody(), "UTF-8"));
+        Assertions.assertEquals("My Secret", amqpMessage.getMessageProperties().getHeaders().get("Secret"));
+        Assertions.assertNull(amqpMessage.getMessageProperties().getHeaders().get("CamelFileName"));
+        
+        //Routing headers still override the defaults per message
+        camelMessage.setHeader(SpringAMQPComponent.EXCHANGE_NAME_HEADER, "exchange2");
+        camelMessage.setHeader(SpringAMQPComponent.ROUTING_KEY_HEADER, "routingKey2");
+        Assertions.assertEquals("exchange2", template.resolveExchangeName(camelMessage));
+        Assertions.assertEquals("routingKey2", template.resolveRoutingKey(camelMessage));
+    }
+}
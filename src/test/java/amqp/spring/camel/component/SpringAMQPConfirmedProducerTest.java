@@ -0,0 +1,72 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+/**
+ * Publisher confirms need confirm channels, so these run against their own connection factory
+ * rather than the one SpringAMQPProducerTest publishes through.
+ */
+public class SpringAMQPConfirmedProducerTest extends CamelTestSupport {
+
+    @Test
+    public void sendConfirmedMessage() throws Exception {
+        MockEndpoint mockEndpoint = getMockEndpoint("mock:test.t");
+        mockEndpoint.expectedBodiesReceived("HELLO WORLD");
+        Exchange exchange = context().createProducerTemplate().send("direct:test.t", e -> e.getIn().setBody("HELLO WORLD"));
+        Assertions.assertNull(exchange.getException());
+        mockEndpoint.assertIsSatisfied();
+    }
+
+    @Test
+    public void sendConfirmedBatch() throws Exception {
+        MockEndpoint mockEndpoint = getMockEndpoint("mock:test.t");
+        mockEndpoint.expectedBodiesReceivedInAnyOrder("ONE", "TWO", "THREE");
+        context().createProducerTemplate().asyncSendBody("direct:test.s", "ONE");
+        context().createProducerTemplate().asyncSendBody("direct:test.s", "TWO");
+        context().createProducerTemplate().asyncSendBody("direct:test.s", "THREE");
+        mockEndpoint.assertIsSatisfied();
+    }
+
+    @Override
+    protected CamelContext createCamelContext() throws Exception {
+        TestConnectionFactory factory = new TestConnectionFactory();
+        factory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        RabbitTemplate amqpTemplate = new RabbitTemplate(factory);
+        SpringAMQPComponent amqpComponent = new SpringAMQPComponent(factory);
+
+        Map<String, AmqpTemplate> templateMap = new HashMap<>(1);
+        templateMap.put(SpringAMQPComponent.DEFAULT_CONNECTION, amqpTemplate);
+        amqpComponent.setAmqpTemplate(templateMap);
+
+        CamelContext camelContext = super.createCamelContext();
+        camelContext.addComponent("spring-amqp", amqpComponent);
+        return camelContext;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:test.t").to("spring-amqp:confirmedExchange:test.t?type=topic&durable=false&autodelete=true&exclusive=false&publisherConfirms=true&confirmTimeout=5000");
+                from("direct:test.s").to("spring-amqp:confirmedExchange:test.t?type=topic&durable=false&autodelete=true&exclusive=false&publisherConfirms=true&batchSize=2&batchTimeout=50");
+
+                from("spring-amqp:confirmedExchange:queue.t:test.t?type=topic&durable=false&autodelete=true&exclusive=false").to("mock:test.t");
+            }
+        };
+    }
+}
@@ -0,0 +1,74 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import com.rabbitmq.client.Channel;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Processor;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+public class SpringAMQPConsumerBatchTest {
+    @Test
+    public void completedBatchAcknowledged() throws Exception {
+        List<String> acks = new ArrayList<>();
+        deliverBatch(exchange -> {}, acks);
+        Assertions.assertEquals(List.of("3:true"), acks);
+    }
+    
+    @Test
+    public void failedBatchRequeued() throws Exception {
+        //Error handlers usually record the failure rather than throw it
+        List<String> acks = new ArrayList<>();
+        deliverBatch(exchange -> exchange.setException(new IllegalStateException("Failed")), acks);
+        Assertions.assertEquals(List.of("nack 3:true:true"), acks);
+    }
+    
+    @Test
+    public void thrownBatchRejected() throws Exception {
+        List<String> acks = new ArrayList<>();
+        deliverBatch(exchange -> { throw new AmqpRejectAndDontRequeueException("Poison"); }, acks);
+        Assertions.assertEquals(List.of("nack 3:true:false"), acks);
+    }
+    
+    private static void deliverBatch(Processor processor, List<String> acks) throws Exception {
+        CamelContext context = new DefaultCamelContext();
+        CachingConnectionFactory factory = new CachingConnectionFactory();
+        SpringAMQPComponent component = new SpringAMQPComponent(factory);
+        component.setCamelContext(context);
+        SpringAMQPEndpoint endpoint = new SpringAMQPEndpoint(component, "spring-amqp:exchange:queue:routingKey", "exchange:queue:routingKey", new RabbitTemplate(factory), null);
+        endpoint.setAcknowledgeMode("MANUAL");
+        endpoint.setConsumerBatchSize(3);
+        
+        List<Message> batch = new ArrayList<>();
+        for(long tag = 1; tag <= 3; ++tag) {
+            MessageProperties properties = new MessageProperties();
+            properties.setDeliveryTag(tag);
+            batch.add(new Message(("Message" + tag).getBytes(), properties));
+        }
+        
+        SpringAMQPConsumer consumer = new SpringAMQPConsumer(endpoint, processor);
+        consumer.getBatchListener().onMessageBatch(batch, recordingChannel(acks));
+        context.close();
+    }
+    
+    private static Channel recordingChannel(List<String> acks) {
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] {Channel.class}, (proxy, method, args) -> {
+            if("basicAck".equals(method.getName()))
+                acks.add(args[0] + ":" + args[1]);
+            else if("basicNack".equals(method.getName()))
+                acks.add("nack " + args[0] + ":" + args[1] + ":" + args[2]);
+            return null;
+        });
+    }
+}
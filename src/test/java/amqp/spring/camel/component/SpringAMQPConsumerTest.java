@@ -4,6 +4,7 @@
 package amqp.spring.camel.component;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.camel.*;
 import org.apache.camel.builder.RouteBuilder;
@@ -158,6 +159,36 @@ public class SpringAMQPConsumerTest extends CamelTestSupport {
         }
     }
 
+    @Test
+    public void testAsyncRequestReply() throws Exception {
+        Object result = context().createProducerTemplate().requestBody("spring-amqp::test.h?asyncRequestReply=true", "testBody");
+        Assertions.assertEquals("testBody reply", result);
+    }
+
+    @Test
+    public void testDirectContainer() throws Exception {
+        MockEndpoint mockEndpoint = getMockEndpoint("mock:test.j");
+        mockEndpoint.expectedBodiesReceived("directMessage");
+        context().createProducerTemplate().sendBody("spring-amqp:directExchange:test.j?durable=false&autodelete=true&exclusive=false", "directMessage");
+        mockEndpoint.assertIsSatisfied();
+    }
+
+    @Test
+    public void testConsumerBatch() throws Exception {
+        MockEndpoint mockEndpoint = getMockEndpoint("mock:test.i");
+        mockEndpoint.expectedMessageCount(1);
+        ProducerTemplate producerTemplate = context().createProducerTemplate();
+        for(int i = 0; i < 3; i++)
+            producerTemplate.sendBodyAndHeader("spring-amqp:directExchange:test.i?durable=false&autodelete=true&exclusive=false", "batchMessage"+i, "HeaderKey", "HeaderValue"+i);
+        
+        mockEndpoint.assertIsSatisfied();
+        Message inMessage = mockEndpoint.getExchanges().get(0).getIn();
+        Assertions.assertEquals(3, inMessage.getBody(List.class).size());
+        Assertions.assertEquals("batchMessage0", inMessage.getBody(List.class).get(0));
+        List<?> batchHeaders = inMessage.getHeader(SpringAMQPMessage.BATCH_HEADERS, List.class);
+        Assertions.assertEquals("HeaderValue2", ((Map<?, ?>) batchHeaders.get(2)).get("HeaderKey"));
+    }
+
     @Test
     public void testWithPrefetchParameter() throws Exception {
         MockEndpoint mockEndpoint = getMockEndpoint("mock:test.g");
@@ -213,6 +244,9 @@ public class SpringAMQPConsumerTest extends CamelTestSupport {
                 from("spring-amqp:headerOrExchange:q4:cheese=white|fromage=bleu?type=headers&durable=false&autodelete=true&exclusive=false").to("mock:test.d");
                 from("spring-amqp::test.e:test.e?durable=false&autodelete=true&exclusive=false").to("mock:test.e");
                 from("spring-amqp::test.f:test.f?durable=false&autodelete=true&exclusive=false").bean("exceptionThrower", "explode");
+                from("spring-amqp:directExchange:q7:test.i?durable=false&autodelete=true&exclusive=false&consumerBatchSize=3&receiveTimeout=500&acknowledgeMode=manual").to("mock:test.i");
+                from("spring-amqp:directExchange:q8:test.j?durable=false&autodelete=true&exclusive=false&containerType=direct&concurrentConsumers=2").to("mock:test.j");
+                from("spring-amqp::test.h:test.h?durable=false&autodelete=true&exclusive=false").transform(body().append(" reply"));
             }
         };
     }
@@ -88,6 +88,53 @@ public class SpringAMQPEndpointTest extends CamelTestSupport {
         Assertions.assertEquals("fanout", endpoint.getType());
     }
     
+    @Test
+    public void testContainerType() {
+        Component component = context().getComponent("spring-amqp", SpringAMQPComponent.class);
+        String remaining = "exchange1:queue1:routingKey1";
+        String uri = "spring-amqp:"+remaining;
+        
+        SpringAMQPEndpoint endpoint = new SpringAMQPEndpoint(component, uri, remaining, null, null);
+        Assertions.assertEquals(SpringAMQPEndpoint.CONTAINER_TYPE_SIMPLE, endpoint.getContainerType());
+        Assertions.assertFalse(endpoint.createEndpointUri().contains("containerType"));
+        
+        endpoint.setContainerType("DIRECT");
+        Assertions.assertEquals(SpringAMQPEndpoint.CONTAINER_TYPE_DIRECT, endpoint.getContainerType());
+        Assertions.assertTrue(endpoint.createEndpointUri().contains("&containerType=direct"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> endpoint.setContainerType("blocking"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> endpoint.setContainerType(null));
+    }
+    
+    @Test
+    public void testHeaderFilter() {
+        Component component = context().getComponent("spring-amqp", SpringAMQPComponent.class);
+        String remaining = "exchange1:queue1:routingKey1";
+        String uri = "spring-amqp:"+remaining;
+        
+        SpringAMQPEndpoint endpoint = new SpringAMQPEndpoint(component, uri, remaining, null, null);
+        Assertions.assertNull(endpoint.getHeaderFilter());
+        
+        endpoint.setExcludeHeaders("Camel*, breadcrumbId");
+        SpringAMQPHeaderFilter filter = endpoint.getHeaderFilter();
+        Assertions.assertSame(filter, endpoint.getHeaderFilter());
+        Assertions.assertFalse(filter.accept("CamelFileName", "file.txt", null));
+        Assertions.assertFalse(filter.accept("BreadcrumbId", "1", null));
+        Assertions.assertTrue(filter.accept("orderId", "1", null));
+        Assertions.assertTrue(endpoint.createEndpointUri().contains("excludeHeaders=Camel*,%20breadcrumbId"));
+        Assertions.assertEquals("Camel*, breadcrumbId", context().getEndpoint(endpoint.createEndpointUri(), SpringAMQPEndpoint.class).getExcludeHeaders());
+        
+        //Reconfiguring the filter keeps the bytes saved so far
+        filter.dropped(10);
+        
+        endpoint.setIncludeHeaders("order*");
+        Assertions.assertNotSame(filter, endpoint.getHeaderFilter());
+        Assertions.assertFalse(endpoint.getHeaderFilter().accept("customer", "1", null));
+        Assertions.assertTrue(endpoint.getHeaderFilter().accept("orderId", "1", null));
+        Assertions.assertEquals(10, endpoint.getHeaderBytesSaved());
+        endpoint.getHeaderFilter().dropped(5);
+        Assertions.assertEquals(15, endpoint.getHeaderBytesSaved());
+    }
+    
     @Test
     public void testHashDelimiters() {
         Component component = context().getComponent("spring-amqp", SpringAMQPComponent.class);
@@ -3,10 +3,15 @@
  * You can obtain one at http://mozilla.org/MPL/2.0/. */
 package amqp.spring.camel.component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
 import org.apache.camel.impl.DefaultCamelContext;
 import org.apache.camel.support.DefaultExchange;
+import org.apache.camel.support.DefaultHeaderFilterStrategy;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.amqp.core.Message;
@@ -77,4 +82,85 @@ public class SpringAMQPHeaderTest {
         Assertions.assertEquals("My Secret", message.getMessageProperties().getHeaders().get("Secret"));
         Assertions.assertNull(message.getMessageProperties().getReplyTo());
     }
+    
+    @Test
+    public void mapCamelHeaders() throws Exception {
+        CamelContext context = new DefaultCamelContext();
+        SpringAMQPMessage camelMessage = new SpringAMQPMessage(context);
+        for(int i = 0; i < 50; ++i)
+            camelMessage.setHeader("custom"+i, i);
+        camelMessage.setHeader("existing", "Camel");
+        camelMessage.setHeader(SpringAMQPHeader.PRIORITY, "5");
+        camelMessage.setHeader(SpringAMQPHeader.DELIVERY_MODE, 2);
+        camelMessage.setHeader(SpringAMQPHeader.TYPE, "order");
+        camelMessage.setHeader(SpringAMQPComponent.ROUTING_KEY_HEADER, "routing.key");
+        camelMessage.setHeader(SpringAMQPComponent.EXCHANGE_NAME_HEADER, "exchange");
+        
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader("existing", "Converter");
+        Message message = SpringAMQPHeader.mapHeaders(new Message(new byte[]{}, properties), camelMessage.getHeaders());
+        
+        Assertions.assertEquals(51, message.getMessageProperties().getHeaders().size());
+        Assertions.assertEquals(49, message.getMessageProperties().getHeaders().get("custom49"));
+        Assertions.assertEquals("Converter", message.getMessageProperties().getHeaders().get("existing"));
+        Assertions.assertEquals(Integer.valueOf(5), message.getMessageProperties().getPriority());
+        Assertions.assertEquals(org.springframework.amqp.core.MessageDeliveryMode.PERSISTENT, message.getMessageProperties().getDeliveryMode());
+        Assertions.assertEquals("order", message.getMessageProperties().getType());
+        Assertions.assertFalse(message.getMessageProperties().getHeaders().containsKey(SpringAMQPComponent.ROUTING_KEY_HEADER));
+    }
+    
+    @Test
+    public void filterCamelHeaders() throws Exception {
+        CamelContext context = new DefaultCamelContext();
+        SpringAMQPMessage camelMessage = new SpringAMQPMessage(context);
+        camelMessage.setHeader("CamelFileName", "some/long/path/to/a/file.txt");
+        camelMessage.setHeader("small", 1);
+        camelMessage.setHeader("large", "0123456789012345678901234567890123456789");
+        camelMessage.setHeader(SpringAMQPHeader.REPLY_TO, "BuzzSaw");
+        
+        Exchange exchange = new DefaultExchange(context);
+        exchange.setIn(camelMessage);
+        
+        DefaultHeaderFilterStrategy strategy = new DefaultHeaderFilterStrategy();
+        strategy.setOutFilterStartsWith(DefaultHeaderFilterStrategy.CAMEL_FILTER_STARTS_WITH);
+        SpringAMQPHeaderFilter filter = new SpringAMQPHeaderFilter(strategy, null, null, 32);
+        Message message = SpringAMQPHeader.mapHeaders(new Message(new byte[]{}, new MessageProperties()), camelMessage.getHeaders(), filter, exchange);
+        
+        //Basic properties are never filtered, and only the small header fits within the budget
+        Assertions.assertEquals("BuzzSaw", message.getMessageProperties().getReplyTo());
+        Assertions.assertEquals(1, message.getMessageProperties().getHeaders().size());
+        Assertions.assertEquals(1, message.getMessageProperties().getHeaders().get("small"));
+        Assertions.assertEquals(2, filter.getDroppedHeaders());
+        Assertions.assertEquals(SpringAMQPHeaderFilter.estimateSize("CamelFileName", "some/long/path/to/a/file.txt")
+                + SpringAMQPHeaderFilter.estimateSize("large", "0123456789012345678901234567890123456789"), filter.getBytesSaved());
+    }
+    
+    @Test
+    public void dropLargestHeadersFirst() throws Exception {
+        Map<String, Object> ascending = new LinkedHashMap<>();
+        ascending.put("a", "x");
+        ascending.put("b", "xxxxxxxxxx");
+        ascending.put("c", "xxxxx");
+        Map<String, Object> descending = new LinkedHashMap<>();
+        descending.put("c", "xxxxx");
+        descending.put("b", "xxxxxxxxxx");
+        descending.put("a", "x");
+        
+        //Whatever order the headers are held in, the largest is the one dropped
+        for (Map<String, Object> headers : Arrays.asList(ascending, descending)) {
+            SpringAMQPHeaderFilter filter = new SpringAMQPHeaderFilter(null, null, null, 30);
+            Message message = SpringAMQPHeader.mapHeaders(new Message(new byte[]{}, new MessageProperties()), headers, filter, null);
+            Assertions.assertEquals(2, message.getMessageProperties().getHeaders().size());
+            Assertions.assertFalse(message.getMessageProperties().getHeaders().containsKey("b"));
+            Assertions.assertEquals(1, filter.getDroppedHeaders());
+            Assertions.assertEquals(SpringAMQPHeaderFilter.estimateSize("b", "xxxxxxxxxx"), filter.getBytesSaved());
+        }
+    }
+    
+    @Test
+    public void estimateEncodedSize() throws Exception {
+        String value = "a\u00e9\u20ac\ud83d\ude00";
+        Assertions.assertEquals(2 + 4 + 4 + value.getBytes(StandardCharsets.UTF_8).length, SpringAMQPHeaderFilter.estimateSize("name", value));
+        Assertions.assertEquals(2 + 3 + 4 + 1, SpringAMQPHeaderFilter.estimateSize("n\u00e9", "x"));
+    }
 }
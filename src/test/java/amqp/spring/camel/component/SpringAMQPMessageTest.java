@@ -3,6 +3,10 @@
  * You can obtain one at http://mozilla.org/MPL/2.0/. */
 package amqp.spring.camel.component;
 
+import amqp.spring.converter.TypeRegistryConverter;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
 import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
 import org.apache.camel.ExchangePattern;
@@ -45,6 +49,65 @@ public class SpringAMQPMessageTest {
         Assertions.assertEquals("Popcorn", camelMessage.getHeader("NotSecret"));
     }
     
+    @Test
+    public void lazyHeaders() throws Exception {
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader("NotSecret", "Popcorn");
+        properties.setHeader(SpringAMQPMessage.EXCHANGE_PATTERN, ExchangePattern.InOut.name());
+        properties.setPriority(3);
+        properties.setReceivedDeliveryMode(org.springframework.amqp.core.MessageDeliveryMode.PERSISTENT);
+        org.springframework.amqp.core.Message message = new org.springframework.amqp.core.Message("Test".getBytes(), properties);
+        
+        SpringAMQPMessage camelMessage = SpringAMQPMessage.fromAMQPMessage(new DefaultCamelContext(), new StringMessageConverter(), message);
+        Assertions.assertEquals("Popcorn", camelMessage.getHeader("notsecret"));
+        Assertions.assertEquals(3, camelMessage.getHeader(SpringAMQPHeader.PRIORITY));
+        Assertions.assertEquals(2, camelMessage.getHeader("DeliveryMode"));
+        Assertions.assertTrue(camelMessage.getHeaders().containsKey(SpringAMQPHeader.REPLY_TO));
+        Assertions.assertNull(camelMessage.getHeader(SpringAMQPMessage.EXCHANGE_PATTERN));
+        Assertions.assertNull(camelMessage.getHeader("missing"));
+        Assertions.assertFalse(((SpringAMQPHeadersMap) camelMessage.getHeaders()).isMaterialized());
+        
+        //Writes copy the headers first, and leave the AMQP properties alone
+        camelMessage.setHeader("NotSecret", "Butter");
+        Assertions.assertTrue(((SpringAMQPHeadersMap) camelMessage.getHeaders()).isMaterialized());
+        Assertions.assertEquals("Butter", camelMessage.getHeader("NotSecret"));
+        Assertions.assertEquals("Popcorn", properties.getHeaders().get("NotSecret"));
+        Assertions.assertEquals(3, camelMessage.getHeader(SpringAMQPHeader.PRIORITY));
+        Assertions.assertEquals(11, camelMessage.getHeaders().size());
+        
+        //Copies see the same headers
+        org.apache.camel.Message copy = SpringAMQPMessage.fromAMQPMessage(new DefaultCamelContext(), new StringMessageConverter(), message).copy();
+        Assertions.assertEquals("Popcorn", copy.getHeader("NotSecret"));
+        Assertions.assertEquals(3, copy.getHeader(SpringAMQPHeader.PRIORITY));
+    }
+    
+    @Test
+    public void lazyHeadersMatchMaterialized() throws Exception {
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader("Flavour", "Salted");
+        properties.setHeader(SpringAMQPMessage.EXCHANGE_PATTERN, ExchangePattern.InOut.name());
+        properties.setHeader("camelexchangepattern", "Forwarded");
+        org.springframework.amqp.core.Message message = new org.springframework.amqp.core.Message("Test".getBytes(), properties);
+        
+        //Lookups that miss fall back to the case insensitive index, and agree with the copied headers
+        CamelContext context = new DefaultCamelContext();
+        context.start();
+        SpringAMQPMessage camelMessage = SpringAMQPMessage.fromAMQPMessage(context, new StringMessageConverter(), message);
+        SpringAMQPMessage materialized = SpringAMQPMessage.fromAMQPMessage(context, new StringMessageConverter(), message);
+        Assertions.assertFalse(materialized.getHeaders().isEmpty());
+        //Sizing copies the headers
+        materialized.getHeaders().size();
+        Assertions.assertTrue(((SpringAMQPHeadersMap) materialized.getHeaders()).isMaterialized());
+        for (String name : new String[] {"flavour", "FLAVOUR", "Flavour", SpringAMQPMessage.EXCHANGE_PATTERN, "camelexchangepattern", "missing"}) {
+            Assertions.assertEquals(materialized.getHeader(name), camelMessage.getHeader(name), name);
+            Assertions.assertEquals(materialized.getHeaders().containsKey(name), camelMessage.getHeaders().containsKey(name), name);
+        }
+        Assertions.assertEquals("Salted", camelMessage.getHeader("FLAVOUR"));
+        Assertions.assertEquals("Forwarded", camelMessage.getHeader(SpringAMQPMessage.EXCHANGE_PATTERN));
+        Assertions.assertFalse(((SpringAMQPHeadersMap) camelMessage.getHeaders()).isMaterialized());
+        context.close();
+    }
+    
     @Test
     public void toAMQP() throws Exception {
         CamelContext context = new DefaultCamelContext();
@@ -62,7 +125,110 @@ public class SpringAMQPMessageTest {
         Assertions.assertEquals("My Secret", message.getMessageProperties().getHeaders().get("Secret"));
     }
     
+    @Test
+    public void toAMQPWithoutCopy() throws Exception {
+        CamelContext context = new DefaultCamelContext();
+        MessageConverter msgConverter = new StringMessageConverter();
+        
+        Exchange exchange = new DefaultExchange(context);
+        DefaultMessage camelMessage = new DefaultMessage(context);
+        camelMessage.setBody("Test Message 3");
+        camelMessage.setHeader("Secret", "My Secret");
+        exchange.setIn(camelMessage);
+        
+        org.springframework.amqp.core.Message message = SpringAMQPMessage.toAMQPMessage(camelMessage, msgConverter, false, null);
+        Assertions.assertEquals("Test Message 3", new String(message.getBody()));
+        Assertions.assertEquals("My Secret", message.getMessageProperties().getHeaders().get("Secret"));
+        Assertions.assertEquals(camelMessage.getMessageId(), message.getMessageProperties().getMessageId());
+        Assertions.assertSame(camelMessage, exchange.getIn());
+    }
+    
+    @Test
+    public void staleTypeIdNotForwarded() throws Exception {
+        CamelContext context = new DefaultCamelContext();
+        TypeRegistryConverter msgConverter = new TypeRegistryConverter();
+        msgConverter.register(7, Integer.class);
+        
+        //A consumed message's type ID arrives as a Camel header, but the new body is not of that type
+        Exchange exchange = new DefaultExchange(context);
+        DefaultMessage camelMessage = new DefaultMessage(context);
+        camelMessage.setBody(Collections.singletonMap("value", "TESTING"));
+        camelMessage.setHeader(TypeRegistryConverter.DEFAULT_TYPE_ID_HEADER, 7);
+        exchange.setIn(camelMessage);
+        
+        org.springframework.amqp.core.Message message = SpringAMQPMessage.toAMQPMessage(camelMessage, msgConverter, false, null);
+        Assertions.assertEquals(TypeRegistryConverter.UNTYPED, message.getMessageProperties().getHeader(TypeRegistryConverter.DEFAULT_TYPE_ID_HEADER));
+        Assertions.assertEquals("TESTING", ((Map<?, ?>) msgConverter.fromMessage(message)).get("value"));
+    }
+    
+    @Test
+    public void rawBody() throws Exception {
+        CamelContext context = new DefaultCamelContext();
+        MessageConverter msgConverter = new StringMessageConverter();
+        byte[] body = "Raw Message".getBytes();
+        
+        org.springframework.amqp.core.Message message = new org.springframework.amqp.core.Message(body, new MessageProperties());
+        SpringAMQPMessage camelMessage = SpringAMQPMessage.fromAMQPMessage(context, msgConverter, message, true);
+        Assertions.assertSame(body, camelMessage.getBody());
+        
+        Exchange exchange = new DefaultExchange(context);
+        exchange.setIn(camelMessage);
+        Assertions.assertSame(body, camelMessage.getBody(ByteBuffer.class).array());
+        org.springframework.amqp.core.Message outbound = camelMessage.toAMQPMessage(msgConverter, true);
+        Assertions.assertSame(body, outbound.getBody());
+        Assertions.assertEquals(body.length, outbound.getMessageProperties().getContentLength());
+        
+        //Whole heap buffers are published without copying, partial views are copied
+        camelMessage.setBody(ByteBuffer.wrap(body));
+        Assertions.assertSame(body, camelMessage.toAMQPMessage(msgConverter, true).getBody());
+        camelMessage.setBody(ByteBuffer.wrap(body, 4, 7).asReadOnlyBuffer());
+        Assertions.assertEquals("Message", new String(camelMessage.toAMQPMessage(msgConverter, true).getBody()));
+        
+        //Anything else is still converted
+        camelMessage.setBody("Converted");
+        Assertions.assertEquals("Converted", new String(camelMessage.toAMQPMessage(msgConverter, true).getBody()));
+    }
+    
+    @Test
+    public void lazyBody() throws Exception {
+        CamelContext context = new DefaultCamelContext();
+        StringMessageConverter msgConverter = new StringMessageConverter();
+        byte[] body = "Lazy Message".getBytes();
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType("text/plain");
+        properties.setHeader("NotSecret", "Popcorn");
+        org.springframework.amqp.core.Message message = new org.springframework.amqp.core.Message(body, properties);
+        
+        SpringAMQPMessage camelMessage = SpringAMQPMessage.fromAMQPMessage(context, msgConverter, message, false, true);
+        Exchange exchange = new DefaultExchange(context);
+        exchange.setIn(camelMessage);
+        Assertions.assertEquals("Popcorn", camelMessage.getHeader("NotSecret"));
+        Assertions.assertTrue(camelMessage.isBodyPending());
+        
+        //Copies and forwards never convert the body
+        SpringAMQPMessage copy = (SpringAMQPMessage) camelMessage.copy();
+        Assertions.assertTrue(copy.isBodyPending());
+        org.springframework.amqp.core.Message forwarded = new SpringAMQPMessage(camelMessage).toAMQPMessage(msgConverter);
+        Assertions.assertSame(body, forwarded.getBody());
+        Assertions.assertEquals("text/plain", forwarded.getMessageProperties().getContentType());
+        Assertions.assertEquals("Popcorn", forwarded.getMessageProperties().getHeaders().get("NotSecret"));
+        Assertions.assertEquals(0, msgConverter.decoded);
+        
+        //The first read converts, once
+        Assertions.assertEquals("Lazy Message", camelMessage.getBody(String.class));
+        Assertions.assertEquals("Lazy Message", camelMessage.getBody());
+        Assertions.assertEquals(1, msgConverter.decoded);
+        Assertions.assertFalse(camelMessage.isBodyPending());
+        
+        //A replaced body is converted as usual
+        copy.setBody("Replaced");
+        Assertions.assertFalse(copy.isBodyPending());
+        Assertions.assertEquals("Replaced", new String(copy.toAMQPMessage(msgConverter).getBody()));
+    }
+    
     private static class StringMessageConverter extends AbstractMessageConverter {
+        protected int decoded = 0;
+        
         @Override
         protected org.springframework.amqp.core.Message createMessage(Object object, MessageProperties messageProperties) {
             return new org.springframework.amqp.core.Message(((String) object).getBytes(), messageProperties);
@@ -70,6 +236,7 @@ public class SpringAMQPMessageTest {
 
         @Override
         public Object fromMessage(org.springframework.amqp.core.Message message) throws MessageConversionException {
+            ++this.decoded;
             return new String(message.getBody());
         }
     }
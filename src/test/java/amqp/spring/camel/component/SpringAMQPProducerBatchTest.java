@@ -0,0 +1,99 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.AsyncProducer;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+public class SpringAMQPProducerBatchTest {
+    @Test
+    public void stopFlushesPendingBatch() throws Exception {
+        CamelContext context = new DefaultCamelContext();
+        CapturingTemplate template = new CapturingTemplate();
+        SpringAMQPComponent component = new SpringAMQPComponent(new CachingConnectionFactory());
+        component.setCamelContext(context);
+        SpringAMQPEndpoint endpoint = new SpringAMQPEndpoint(component, "spring-amqp:exchange:routingKey", "exchange:routingKey", template, null);
+        endpoint.setCreateResources(false);
+        endpoint.setBatchSize(10);
+        endpoint.setBatchTimeout(60000);
+
+        AsyncProducer producer = (AsyncProducer) endpoint.createProducer();
+        producer.start();
+
+        Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody("ONE");
+        CountDownLatch done = new CountDownLatch(1);
+        Assertions.assertFalse(producer.process(exchange, doneSync -> done.countDown()));
+        Assertions.assertEquals(1, done.getCount());
+        Assertions.assertTrue(template.sent.isEmpty());
+
+        //Stopping publishes the partial batch rather than leaving its callback hanging
+        producer.stop();
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assertions.assertNull(exchange.getException());
+        Assertions.assertEquals(1, template.sent.size());
+        Assertions.assertEquals("ONE", new String(template.sent.get(0).getBody(), "UTF-8"));
+        context.close();
+    }
+
+    @Test
+    public void interruptedConfirmWaitKeepsInterrupt() throws Exception {
+        CamelContext context = new DefaultCamelContext();
+        CachingConnectionFactory factory = new CachingConnectionFactory();
+        factory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        CapturingTemplate template = new CapturingTemplate();
+        template.setConnectionFactory(factory);
+        SpringAMQPComponent component = new SpringAMQPComponent(factory);
+        component.setCamelContext(context);
+        SpringAMQPEndpoint endpoint = new SpringAMQPEndpoint(component, "spring-amqp:exchange:routingKey", "exchange:routingKey", template, null);
+        endpoint.setCreateResources(false);
+        endpoint.setPublisherConfirms(true);
+
+        SpringAMQPProducer producer = (SpringAMQPProducer) endpoint.createProducer();
+        producer.start();
+
+        //The confirm never arrives, so the wait is cut short by the interrupt
+        Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody("ONE");
+        Thread.currentThread().interrupt();
+        producer.process(exchange);
+        Assertions.assertTrue(Thread.interrupted());
+        Assertions.assertTrue(exchange.getException() instanceof InterruptedException);
+        Assertions.assertEquals(1, template.sent.size());
+        producer.stop();
+        context.close();
+    }
+
+    private static class CapturingTemplate extends RabbitTemplate {
+        private final List<Message> sent = new CopyOnWriteArrayList<>();
+
+        @Override
+        public <T> T invoke(OperationsCallback<T> action) {
+            return action.doInRabbit(this);
+        }
+
+        @Override
+        public void send(String exchange, String routingKey, Message message) {
+            this.sent.add(message);
+        }
+
+        @Override
+        public void send(String exchange, String routingKey, Message message, CorrelationData correlationData) {
+            this.sent.add(message);
+        }
+    }
+}
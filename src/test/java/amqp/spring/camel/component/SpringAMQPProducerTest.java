@@ -41,6 +41,12 @@ public class SpringAMQPProducerTest extends CamelTestSupport {
         context().createProducerTemplate().sendBody("direct:test.z", "HELLO WORLD");
     }
     
+    @Test
+    public void confirmsRequireConfirmingFactory() throws Exception {
+        Producer producer = context().getEndpoint("spring-amqp:fanoutExchange?durable=false&autodelete=true&exclusive=false&publisherConfirms=true").createProducer();
+        Assertions.assertThrows(IllegalStateException.class, producer::start);
+    }
+    
     @Test
     public void sendAsyncMessage() throws Exception {
         context().createProducerTemplate().asyncRequestBody("direct:test.x", "HELLO WORLD");
@@ -64,6 +70,16 @@ public class SpringAMQPProducerTest extends CamelTestSupport {
         });
     }
     
+    @Test
+    public void sendBatchedMessages() throws Exception {
+        MockEndpoint mockEndpoint = getMockEndpoint("mock:test.s");
+        mockEndpoint.expectedBodiesReceivedInAnyOrder("ONE", "TWO", "THREE");
+        context().createProducerTemplate().asyncSendBody("direct:test.s", "ONE");
+        context().createProducerTemplate().asyncSendBody("direct:test.s", "TWO");
+        context().createProducerTemplate().asyncSendBody("direct:test.s", "THREE");
+        mockEndpoint.assertIsSatisfied();
+    }
+    
     @Test
     public void sendObject() throws Exception {
         context().createProducerTemplate().sendBody("direct:test.z", new ProducerTestObject());
@@ -123,9 +139,11 @@ public class SpringAMQPProducerTest extends CamelTestSupport {
                 from("direct:test.w").to("spring-amqp:fanoutExchange?durable=false&autodelete=true&exclusive=false");
                 from("direct:test.v").to("spring-amqp:topicExchange?type=topic&durable=false&autodelete=true&exclusive=false");
                 from("direct:test.u").to("spring-amqp:topicExchange:test.u?durable=false&autodelete=true&exclusive=false");
+                from("direct:test.s").to("spring-amqp:topicExchange:test.s?durable=false&autodelete=true&exclusive=false&batchSize=2&batchTimeout=50");
                 
                 from("spring-amqp:topicExchange:queue.v:#.v?type=topic&durable=false&autodelete=true&exclusive=false").to("mock:test.v");
                 from("spring-amqp:topicExchange:queue.u:#.u?type=topic&durable=false&autodelete=true&exclusive=false").to("mock:test.u");
+                from("spring-amqp:topicExchange:queue.s:#.s?type=topic&durable=false&autodelete=true&exclusive=false").to("mock:test.s");
                 
                 // we just need to bind some queue to the fanoutExchange otherwise the exchange will not be deleted after the tests
                 from("spring-amqp:fanoutExchange:queue.x?type=fanout&durable=false&autodelete=true&exclusive=false").to("log:foo?level=OFF"); // trash bin
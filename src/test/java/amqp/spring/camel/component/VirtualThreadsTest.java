@@ -0,0 +1,28 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.camel.component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class VirtualThreadsTest {
+    @Test
+    public void testThreadPerTaskExecutor() throws Exception {
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        if(! VirtualThreads.isSupported()) {
+            Assertions.assertNull(executor);
+            Assertions.assertNull(VirtualThreads.newThreadFactory("test-"));
+            return;
+        }
+        
+        try {
+            Future<String> threadName = executor.submit(() -> Thread.currentThread().getName());
+            Assertions.assertEquals("test-0", threadName.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
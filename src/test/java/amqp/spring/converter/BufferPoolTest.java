@@ -0,0 +1,91 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+public class BufferPoolTest {
+    
+    @Test
+    public void testSizeClasses() throws Exception {
+        BufferPool pool = new BufferPool(1000, 5000, 16384);
+        byte[] small = pool.acquire(10);
+        Assertions.assertEquals(1024, small.length);
+        byte[] medium = pool.acquire(1025);
+        Assertions.assertEquals(2048, medium.length);
+        byte[] huge = pool.acquire(10000);
+        Assertions.assertEquals(10000, huge.length);
+        Assertions.assertEquals(1024 + 2048 + 10000, pool.getOutstandingBytes());
+        Assertions.assertEquals(0, pool.getHitRate());
+        
+        pool.release(small);
+        pool.release(medium);
+        pool.release(huge);
+        Assertions.assertEquals(0, pool.getOutstandingBytes());
+        Assertions.assertEquals(1024 + 2048, pool.getPooledBytes());
+        
+        Assertions.assertSame(medium, pool.acquire(2000));
+        Assertions.assertSame(small, pool.acquire(1024));
+        Assertions.assertNotSame(huge, pool.acquire(10000));
+        Assertions.assertEquals(2, pool.getHits());
+        Assertions.assertEquals(4, pool.getMisses());
+        Assertions.assertEquals(0, pool.getPooledBytes());
+    }
+    
+    @Test
+    public void testPooledBytesLimit() throws Exception {
+        BufferPool pool = new BufferPool(1024, 8192, 8192);
+        byte[] first = pool.acquire(8192);
+        byte[] second = pool.acquire(8192);
+        pool.release(first);
+        pool.release(second);
+        Assertions.assertEquals(8192, pool.getPooledBytes());
+        
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BufferPool(0, 1024, 0));
+    }
+    
+    @Test
+    public void testForeignBuffersRejected() throws Exception {
+        BufferPool pool = new BufferPool(1024, 8192, 65536);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> pool.release(new byte[1024]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> pool.release(new byte[1000]));
+        
+        //A second release would otherwise hand the same buffer to two users
+        byte[] buffer = pool.acquire(2048);
+        pool.release(buffer);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> pool.release(buffer));
+        Assertions.assertEquals(2048, pool.getPooledBytes());
+        Assertions.assertEquals(0, pool.getOutstandingBytes());
+        Assertions.assertSame(buffer, pool.acquire(2048));
+        Assertions.assertNotSame(buffer, pool.acquire(2048));
+    }
+    
+    @Test
+    public void testConverterBuffers() throws Exception {
+        BufferPool pool = new BufferPool();
+        StringConverter converter = new StringConverter();
+        converter.setBufferPool(pool);
+        
+        //Large enough to grow through several size classes
+        StringBuilder text = new StringBuilder();
+        while(text.length() < 100000)
+            text.append("pooled ");
+        
+        for(int i = 0; i < 3; ++i) {
+            Message amqpMessage = converter.toMessage(text, new MessageProperties());
+            Assertions.assertEquals(text.toString(), converter.fromMessage(amqpMessage));
+        }
+        Assertions.assertEquals(0, pool.getOutstandingBytes());
+        Assertions.assertTrue(pool.getHits() > 0);
+        
+        CompressingConverter compressing = new CompressingConverter(converter);
+        compressing.setBufferPool(pool);
+        Message compressed = compressing.toMessage(text, new MessageProperties());
+        Assertions.assertEquals(text.toString(), compressing.fromMessage(compressed));
+        Assertions.assertEquals(0, pool.getOutstandingBytes());
+    }
+}
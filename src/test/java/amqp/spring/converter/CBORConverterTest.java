@@ -0,0 +1,45 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+public class CBORConverterTest {
+    
+    @Test
+    public void testConversion() throws Exception {
+        JacksonConverterTest.TestObject testObject = new JacksonConverterTest.TestObject();
+        testObject.setValue("TESTING");
+        
+        CBORConverter converter = new CBORConverter();
+        converter.setAllowedTypes(new String[] {"amqp.spring.converter.JacksonConverterTest$TestObject"});
+        Message amqpMessage = converter.toMessage(testObject, new MessageProperties());
+        Assertions.assertEquals(CBORConverter.CONTENT_TYPE_CBOR, amqpMessage.getMessageProperties().getContentType());
+        Assertions.assertNull(amqpMessage.getMessageProperties().getContentEncoding());
+        
+        //Smaller than the equivalent JSON
+        Message jsonMessage = new JacksonConverter().toMessage(testObject, new MessageProperties());
+        Assertions.assertTrue(amqpMessage.getBody().length < jsonMessage.getBody().length);
+        
+        Assertions.assertEquals(testObject, converter.fromMessage(amqpMessage));
+        Assertions.assertThrows(MessageConversionException.class, () -> converter.fromMessage(jsonMessage));
+    }
+    
+    @Test
+    public void testContentTypeFactory() throws Exception {
+        ContentTypeConverterFactory factory = new ContentTypeConverterFactory();
+        factory.getConverters().put(MessageProperties.CONTENT_TYPE_JSON, new JacksonConverter());
+        factory.getConverters().put(CBORConverter.CONTENT_TYPE_CBOR, new CBORConverter());
+        
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(CBORConverter.CONTENT_TYPE_CBOR);
+        Message amqpMessage = factory.toMessage("TESTING", messageProperties);
+        Assertions.assertEquals(CBORConverter.CONTENT_TYPE_CBOR, amqpMessage.getMessageProperties().getContentType());
+        Assertions.assertEquals("TESTING", factory.fromMessage(amqpMessage));
+    }
+}
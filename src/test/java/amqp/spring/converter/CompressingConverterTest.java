@@ -0,0 +1,91 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+public class CompressingConverterTest {
+    
+    @Test
+    public void testCompression() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 1000; ++i)
+            text.append("compressible ");
+        
+        CompressingConverter converter = new CompressingConverter(new StringConverter());
+        Message amqpMessage = converter.toMessage(text.toString(), new MessageProperties());
+        Assertions.assertEquals("deflate:UTF-8", amqpMessage.getMessageProperties().getContentEncoding());
+        Assertions.assertTrue(amqpMessage.getBody().length < text.length() / 10);
+        Assertions.assertEquals(amqpMessage.getBody().length, amqpMessage.getMessageProperties().getContentLength());
+        
+        //Plain zlib, as written by Spring AMQP's DeflaterPostProcessor
+        byte[] inflated = new InflaterInputStream(new ByteArrayInputStream(amqpMessage.getBody())).readAllBytes();
+        Assertions.assertEquals(text.toString(), new String(inflated, "UTF-8"));
+        
+        //The delivered message still describes its own, deflated body
+        Assertions.assertEquals(text.toString(), converter.fromMessage(amqpMessage));
+        Assertions.assertEquals("deflate:UTF-8", amqpMessage.getMessageProperties().getContentEncoding());
+        Assertions.assertEquals(amqpMessage.getBody().length, amqpMessage.getMessageProperties().getContentLength());
+        
+        Assertions.assertEquals(1, converter.getCompressedMessages());
+        Assertions.assertEquals(1, converter.getDecompressedMessages());
+        Assertions.assertEquals(text.length(), converter.getUncompressedBytes());
+        Assertions.assertTrue(converter.getCompressionRatio() < 0.1);
+    }
+    
+    @Test
+    public void testMaxInflatedSize() throws Exception {
+        CompressingConverter converter = new CompressingConverter(new StringConverter());
+        Message amqpMessage = converter.toMessage(new String(new char[100000]).replace('\0', 'a'), new MessageProperties());
+        Assertions.assertTrue(amqpMessage.getBody().length < 1000);
+        
+        converter.setMaxInflatedSize(10000);
+        Assertions.assertThrows(MessageConversionException.class, () -> converter.fromMessage(amqpMessage));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> converter.setMaxInflatedSize(0));
+        
+        //The pooled inflater is still usable after the rejection
+        converter.setMaxInflatedSize(100000);
+        Assertions.assertEquals(100000, ((String) converter.fromMessage(amqpMessage)).length());
+        converter.close();
+    }
+    
+    @Test
+    public void testThreshold() throws Exception {
+        CompressingConverter converter = new CompressingConverter(new StringConverter());
+        converter.setThreshold(64);
+        
+        Message amqpMessage = converter.toMessage("short", new MessageProperties());
+        Assertions.assertEquals("UTF-8", amqpMessage.getMessageProperties().getContentEncoding());
+        Assertions.assertEquals("short", new String(amqpMessage.getBody(), "UTF-8"));
+        Assertions.assertEquals("short", converter.fromMessage(amqpMessage));
+        Assertions.assertEquals(0, converter.getCompressedMessages());
+        Assertions.assertEquals(1.0, converter.getCompressionRatio(), 0.0);
+        
+        Assertions.assertThrows(IllegalArgumentException.class, () -> converter.setLevel(12));
+    }
+    
+    @Test
+    public void testContentTypeFactory() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 1000; ++i)
+            text.append("compressible ");
+        
+        StringConverter stringConverter = new StringConverter();
+        stringConverter.setContentType("text/plain");
+        ContentTypeConverterFactory factory = new ContentTypeConverterFactory();
+        factory.getConverters().put("text/plain", new CompressingConverter(stringConverter));
+        
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType("text/plain");
+        Message amqpMessage = factory.toMessage(text.toString(), messageProperties);
+        Assertions.assertEquals("deflate:UTF-8", amqpMessage.getMessageProperties().getContentEncoding());
+        Assertions.assertEquals(text.toString(), factory.fromMessage(amqpMessage));
+    }
+}
@@ -4,10 +4,12 @@
 package amqp.spring.converter;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
 
 public class ContentTypeConverterFactoryTest {
     @Test
@@ -60,6 +62,77 @@ public class ContentTypeConverterFactoryTest {
         Assertions.assertEquals(testObject, newObject);
     }
     
+    @Test
+    public void testMediaTypeMatching() throws Exception {
+        StringConverter plainConverter = new StringConverter();
+        StringConverter textConverter = new StringConverter();
+        StringConverter latinConverter = new StringConverter();
+        StringConverter jsonConverter = new StringConverter();
+        StringConverter fallbackConverter = new StringConverter();
+        
+        ContentTypeConverterFactory converter = new ContentTypeConverterFactory();
+        converter.getConverters().put("text/plain", plainConverter);
+        converter.getConverters().put("text/*", textConverter);
+        converter.getConverters().put("text/plain; charset=ISO-8859-1", latinConverter);
+        converter.getConverters().put("application/*+json", jsonConverter);
+        converter.setFallbackConverter(fallbackConverter);
+        
+        Assertions.assertSame(plainConverter, converter.resolve("text/plain"));
+        Assertions.assertSame(plainConverter, converter.resolve("text/plain;charset=UTF-8"));
+        Assertions.assertSame(latinConverter, converter.resolve("TEXT/PLAIN; charset=\"iso-8859-1\""));
+        Assertions.assertSame(textConverter, converter.resolve("text/html"));
+        Assertions.assertSame(jsonConverter, converter.resolve("application/vnd.example+json; version=2"));
+        Assertions.assertSame(fallbackConverter, converter.resolve("application/xml"));
+        Assertions.assertSame(fallbackConverter, converter.resolve("not a media type"));
+        Assertions.assertSame(fallbackConverter, converter.resolve(null));
+        
+        //Repeated lookups are served from the cache, and changes take effect immediately
+        Assertions.assertSame(textConverter, converter.resolve("text/html"));
+        StringConverter htmlConverter = new StringConverter();
+        converter.getConverters().put("text/html", htmlConverter);
+        Assertions.assertSame(htmlConverter, converter.resolve("text/html"));
+        converter.getConverters().remove("text/*");
+        Assertions.assertSame(fallbackConverter, converter.resolve("text/csv"));
+        
+        //Fallback changes need no invalidation
+        converter.setFallbackConverter(null);
+        Assertions.assertNull(converter.resolve("text/csv"));
+    }
+    
+    @Test
+    public void testParameterizedContentType() throws Exception {
+        TestObject testObject = new TestObject();
+        testObject.setValue("TESTING");
+        
+        XStreamConverter xStreamConverter = new XStreamConverter();
+        xStreamConverter.setAllowedTypes(new String[] {"amqp.spring.converter.ContentTypeConverterFactoryTest$TestObject"});
+        StringConverter stringConverter = new StringConverter();
+        stringConverter.setContentType("text/plain");
+        
+        ContentTypeConverterFactory converter = new ContentTypeConverterFactory();
+        converter.getConverters().put("application/json", xStreamConverter);
+        converter.getConverters().put("text/plain", stringConverter);
+        
+        //Routed by media type, and understood by the converter it is routed to
+        MessageProperties jsonProperties = new MessageProperties();
+        jsonProperties.setContentType("application/json");
+        Message amqpMessage = converter.toMessage(testObject, jsonProperties);
+        amqpMessage.getMessageProperties().setContentType("application/json; charset=UTF-8");
+        Assertions.assertEquals(testObject, converter.fromMessage(amqpMessage));
+        
+        //The charset parameter overrides the content encoding
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType("Text/Plain; charset=ISO-8859-1");
+        messageProperties.setContentEncoding("UTF-8");
+        amqpMessage = new Message("caf\u00e9".getBytes(StandardCharsets.ISO_8859_1), messageProperties);
+        Assertions.assertEquals("caf\u00e9", converter.fromMessage(amqpMessage));
+        
+        //Other media types are still refused
+        messageProperties.setContentType("text/html; charset=UTF-8");
+        Message htmlMessage = amqpMessage;
+        Assertions.assertThrows(MessageConversionException.class, () -> stringConverter.fromMessage(htmlMessage));
+    }
+    
     private static class TestObject implements Serializable {
         private static final long serialVersionUID = -5994283445686875873L;
         protected String value;
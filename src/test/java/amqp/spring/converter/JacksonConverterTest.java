@@ -0,0 +1,99 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import java.io.Serializable;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.DefaultClassMapper;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+public class JacksonConverterTest {
+    
+    @Test
+    public void testConversion() throws Exception {
+        TestObject testObject = new TestObject();
+        testObject.setValue("TESTING");
+        
+        JacksonConverter converter = new JacksonConverter();
+        converter.setAllowedTypes(new String[] {"amqp.spring.converter.JacksonConverterTest$TestObject"});
+        Message amqpMessage = converter.toMessage(testObject, new MessageProperties());
+        Assertions.assertEquals("{\"value\":\"TESTING\"}", new String(amqpMessage.getBody()));
+        Assertions.assertEquals(MessageProperties.CONTENT_TYPE_JSON, amqpMessage.getMessageProperties().getContentType());
+        Assertions.assertEquals("amqp.spring.converter.JacksonConverterTest$TestObject", amqpMessage.getMessageProperties().getHeaders().get(DefaultClassMapper.DEFAULT_CLASSID_FIELD_NAME));
+
+        Object newObject = converter.fromMessage(amqpMessage);
+        Assertions.assertEquals(testObject, newObject);
+        
+        //Second round trip goes through the cached writer and reader
+        Assertions.assertEquals(testObject, converter.fromMessage(converter.toMessage(testObject, new MessageProperties())));
+    }
+    
+    @Test
+    public void testDisallowedType() throws Exception {
+        TestObject testObject = new TestObject();
+        testObject.setValue("TESTING");
+        
+        JacksonConverter converter = new JacksonConverter();
+        Message amqpMessage = converter.toMessage(testObject, new MessageProperties());
+        Assertions.assertThrows(MessageConversionException.class, () -> converter.fromMessage(amqpMessage));
+    }
+    
+    @Test
+    public void testUntypedMessage() throws Exception {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        Message amqpMessage = new Message("{\"value\":\"TESTING\"}".getBytes("UTF-8"), messageProperties);
+        
+        Object newObject = new JacksonConverter().fromMessage(amqpMessage);
+        Assertions.assertEquals("TESTING", ((Map<?, ?>) newObject).get("value"));
+        
+        //Parameters on the content type don't change the media type
+        messageProperties.setContentType("application/json; charset=UTF-8");
+        newObject = new JacksonConverter().fromMessage(amqpMessage);
+        Assertions.assertEquals("TESTING", ((Map<?, ?>) newObject).get("value"));
+    }
+    
+    @Test
+    public void testEncoding() throws Exception {
+        JacksonConverter converter = new JacksonConverter();
+        converter.setEncoding("utf-16be");
+        Assertions.assertEquals("UTF-16BE", converter.getEncoding());
+        
+        Message amqpMessage = converter.toMessage("TESTING", new MessageProperties());
+        Assertions.assertEquals("\"TESTING\"", new String(amqpMessage.getBody(), "UTF-16BE"));
+        Assertions.assertEquals("TESTING", converter.fromMessage(amqpMessage));
+        
+        Assertions.assertThrows(IllegalArgumentException.class, () -> converter.setEncoding("ISO-8859-1"));
+    }
+    
+    public static class TestObject implements Serializable {
+        private static final long serialVersionUID = 5137673667799859817L;
+        protected String value;
+        public String getValue() { return value; }
+        public void setValue(String value) { this.value = value; }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final TestObject other = (TestObject) obj;
+            return this.value == null ? other.value == null : this.value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 29 * hash + (this.value != null ? this.value.hashCode() : 0);
+            return hash;
+        }
+    }
+}
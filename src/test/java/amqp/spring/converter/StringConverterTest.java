@@ -4,10 +4,14 @@
 package amqp.spring.converter;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
 import org.springframework.amqp.support.converter.MessageConverter;
 
 public class StringConverterTest {
@@ -26,6 +30,79 @@ public class StringConverterTest {
         Assertions.assertEquals("TESTING", newObject);
     }
     
+    @Test
+    public void testCharSequence() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 5000; ++i)
+            text.append("Grüße ").append(i).append(' ');
+        
+        StringConverter converter = new StringConverter();
+        Message amqpMessage = converter.toMessage(text, new MessageProperties());
+        Assertions.assertArrayEquals(text.toString().getBytes("UTF-8"), amqpMessage.getBody());
+        Assertions.assertEquals(text.toString(), converter.fromMessage(amqpMessage));
+        
+        //Surrogate pairs straddling the chunk boundary
+        StringBuilder emoji = new StringBuilder("x");
+        for(int i = 0; i < 5000; ++i)
+            emoji.append("\ud83d\ude00");
+        Assertions.assertArrayEquals(emoji.toString().getBytes("UTF-8"), converter.toMessage(emoji, new MessageProperties()).getBody());
+        
+        //Empty and unencodable input behave like String.getBytes
+        Assertions.assertEquals(0, converter.toMessage(new StringBuilder(), new MessageProperties()).getBody().length);
+        converter.setEncoding("US-ASCII");
+        Assertions.assertEquals("?", new String(converter.toMessage(new StringBuilder("\u00fc"), new MessageProperties()).getBody(), "US-ASCII"));
+    }
+    
+    @Test
+    public void testCharSequenceView() throws Exception {
+        StringConverter converter = new StringConverter();
+        converter.setCharSequenceView(true);
+        
+        Message amqpMessage = converter.toMessage("ASCII only", new MessageProperties());
+        Object view = converter.fromMessage(amqpMessage);
+        Assertions.assertTrue(view instanceof ByteCharSequence);
+        Assertions.assertEquals("ASCII only", view.toString());
+        Assertions.assertEquals("ASCII only".hashCode(), view.hashCode());
+        Assertions.assertEquals("only", ((CharSequence) view).subSequence(6, 10).toString());
+        
+        //Multi-byte UTF-8 still decodes to a String
+        Assertions.assertEquals("Grüße", converter.fromMessage(converter.toMessage("Grüße", new MessageProperties())));
+        Assertions.assertTrue(converter.fromMessage(converter.toMessage("longer than one word, then ü", new MessageProperties())) instanceof String);
+        
+        converter.setEncoding("ISO-8859-1");
+        Object latin = converter.fromMessage(converter.toMessage("Grüße", new MessageProperties()));
+        Assertions.assertTrue(latin instanceof ByteCharSequence);
+        Assertions.assertEquals("Grüße", latin.toString());
+    }
+    
+    @Test
+    public void testEncodingChangeSeenByAllThreads() throws Exception {
+        StringConverter converter = new StringConverter();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            //The worker caches a UTF-8 encoder before the encoding changes on this thread
+            Message amqpMessage = executor.submit(() -> converter.toMessage(new StringBuilder("caf\u00e9"), new MessageProperties())).get();
+            Assertions.assertEquals(5, amqpMessage.getBody().length);
+            
+            converter.setEncoding("ISO-8859-1");
+            amqpMessage = executor.submit(() -> converter.toMessage(new StringBuilder("caf\u00e9"), new MessageProperties())).get();
+            Assertions.assertEquals("ISO-8859-1", amqpMessage.getMessageProperties().getContentEncoding());
+            Assertions.assertArrayEquals("caf\u00e9".getBytes(StandardCharsets.ISO_8859_1), amqpMessage.getBody());
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    public void testUnknownEncoding() throws Exception {
+        StringConverter converter = new StringConverter();
+        Assertions.assertThrows(MessageConversionException.class, () -> converter.setEncoding("NOT-A-CHARSET"));
+        
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentEncoding("NOT-A-CHARSET");
+        Assertions.assertThrows(MessageConversionException.class, () -> converter.fromMessage(new Message(new byte[] {1}, messageProperties)));
+    }
+    
     private static class TestObject implements Serializable {
         private static final long serialVersionUID = 8035548300959603643L;
         protected String value;
@@ -0,0 +1,62 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/. */
+package amqp.spring.converter;
+
+import java.util.Collections;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.DefaultClassMapper;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+public class TypeRegistryConverterTest {
+    
+    @Test
+    public void testConversion() throws Exception {
+        JacksonConverterTest.TestObject testObject = new JacksonConverterTest.TestObject();
+        testObject.setValue("TESTING");
+        
+        TypeRegistryConverter converter = new TypeRegistryConverter();
+        converter.setTypes(Collections.singletonMap(7, "amqp.spring.converter.JacksonConverterTest$TestObject"));
+        Message amqpMessage = converter.toMessage(testObject, new MessageProperties());
+        Assertions.assertEquals("{\"value\":\"TESTING\"}", new String(amqpMessage.getBody()));
+        Assertions.assertEquals(7, (Integer) amqpMessage.getMessageProperties().getHeader(TypeRegistryConverter.DEFAULT_TYPE_ID_HEADER));
+        Assertions.assertNull(amqpMessage.getMessageProperties().getHeader(DefaultClassMapper.DEFAULT_CLASSID_FIELD_NAME));
+        Assertions.assertEquals(testObject, converter.fromMessage(amqpMessage));
+        
+        //IDs sent as strings by other clients are accepted too
+        amqpMessage.getMessageProperties().setHeader(TypeRegistryConverter.DEFAULT_TYPE_ID_HEADER, "7");
+        Assertions.assertEquals(testObject, converter.fromMessage(amqpMessage));
+    }
+    
+    @Test
+    public void testUnregisteredTypes() throws Exception {
+        JacksonConverterTest.TestObject testObject = new JacksonConverterTest.TestObject();
+        testObject.setValue("TESTING");
+        
+        TypeRegistryConverter converter = new TypeRegistryConverter();
+        converter.register(1, String.class);
+        converter.register(3, Integer.class);
+        
+        //Unregistered types fall back to class headers and the allowedTypes whitelist
+        Message amqpMessage = converter.toMessage(testObject, new MessageProperties());
+        Assertions.assertEquals(TypeRegistryConverter.UNTYPED, amqpMessage.getMessageProperties().getHeader(TypeRegistryConverter.DEFAULT_TYPE_ID_HEADER));
+        Assertions.assertThrows(MessageConversionException.class, () -> converter.fromMessage(amqpMessage));
+        converter.setAllowedTypes(new String[] {"amqp.spring.converter.JacksonConverterTest$TestObject"});
+        Assertions.assertEquals(testObject, converter.fromMessage(amqpMessage));
+        
+        Message unknownMessage = converter.toMessage("TESTING", new MessageProperties());
+        unknownMessage.getMessageProperties().setHeader(TypeRegistryConverter.DEFAULT_TYPE_ID_HEADER, 2);
+        Assertions.assertThrows(MessageConversionException.class, () -> converter.fromMessage(unknownMessage));
+        unknownMessage.getMessageProperties().setHeader(TypeRegistryConverter.DEFAULT_TYPE_ID_HEADER, "x");
+        Assertions.assertThrows(MessageConversionException.class, () -> converter.fromMessage(unknownMessage));
+        
+        Assertions.assertEquals(42, converter.fromMessage(converter.toMessage(42, new MessageProperties())));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> converter.register(3, Long.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> converter.register(4, String.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> converter.setTypes(Collections.singletonMap(1, "not.a.Type")));
+        Assertions.assertEquals("java.lang.Integer", converter.getTypes().get(3));
+    }
+}
@@ -30,6 +30,26 @@ public class XStreamConverterTest {
         Assertions.assertEquals("UTF-8", ((XStreamConverter) converter).getEncoding());
     }
     
+    @Test
+    public void testBufferReuse() throws Exception {
+        XStreamConverter converter = new XStreamConverter();
+        converter.setAllowedTypes(new String[] {"amqp.spring.converter.XStreamConverterTest$TestObject"});
+        
+        //A large message followed by small ones must not leak stale bytes from the re-used buffers
+        StringBuilder large = new StringBuilder();
+        for(int i = 0; i < 100000; ++i)
+            large.append('x');
+        
+        for(String value : new String[] {large.toString(), "A", "BB", large.toString(), "C"}) {
+            TestObject testObject = new TestObject();
+            testObject.setValue(value);
+            
+            Message amqpMessage = converter.toMessage(testObject, new MessageProperties());
+            Assertions.assertEquals(amqpMessage.getBody().length, amqpMessage.getMessageProperties().getContentLength());
+            Assertions.assertEquals(testObject, converter.fromMessage(amqpMessage));
+        }
+    }
+    
     private static class TestObject implements Serializable {
         private static final long serialVersionUID = 5137673667799859817L;
         protected String value;